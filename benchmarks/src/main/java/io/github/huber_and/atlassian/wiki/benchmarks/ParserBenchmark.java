@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.huber_and.atlassian.wiki.Configuration;
+import io.github.huber_and.atlassian.wiki.Page;
+import io.github.huber_and.atlassian.wiki.PageTree;
+import io.github.huber_and.atlassian.wiki.parser.AntoraParser;
+
+/**
+ * Benchmarks of the {@link AntoraParser} on generated sites.
+ *
+ * {@code resolvePages} reads the navigation menu of the whole site, {@code loadContent}
+ * loads the article of one page per invocation, cycling through all pages of the site.
+ *
+ * @author Andreas Huber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	/** The number of pages of the site. */
+	@Param({ "100", "1000", "10000" })
+	private int pages;
+
+	/** The generated site. */
+	private Path site;
+
+	/** The parser. */
+	private AntoraParser parser;
+
+	/** All pages of the site in pre-order. */
+	private List<Page> all;
+
+	/** The index of the next page to load. */
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		site = SyntheticSite.generate(pages, SyntheticSite.Shape.MIXED);
+		parser = new AntoraParser(new Configuration());
+		all = parser.resolvePages(site).getPages();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticSite.delete(site);
+	}
+
+	@Benchmark
+	public PageTree resolvePages() throws IOException {
+		return parser.resolvePages(site);
+	}
+
+	@Benchmark
+	public Element loadContent() throws IOException {
+		final var page = all.get(next);
+		next = (next + 1) % all.size();
+		return parser.loadContent(page);
+	}
+}
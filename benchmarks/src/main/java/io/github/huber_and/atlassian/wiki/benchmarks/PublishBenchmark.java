@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.huber_and.atlassian.wiki.Configuration;
+import io.github.huber_and.atlassian.wiki.ConfluenceClient;
+import io.github.huber_and.atlassian.wiki.PageTree;
+import io.github.huber_and.atlassian.wiki.PublishReport;
+import io.github.huber_and.atlassian.wiki.PublishState;
+import io.github.huber_and.atlassian.wiki.parser.AntoraParser;
+import io.github.huber_and.atlassian.wiki.stub.ConfluenceStub;
+import io.github.huber_and.atlassian.wiki.transformer.ConfluenceTransformer;
+
+/**
+ * End-to-end benchmark of {@link ConfluenceClient#updatePages} against a
+ * {@link ConfluenceStub}.
+ *
+ * The {@code initial} mode publishes the site into an empty space, creating every page,
+ * property and attachment. The {@code unchanged} mode republishes a site which is already
+ * up to date, with and without the publish state of the previous run. The latency of the
+ * stub and the share of throttled requests can be raised to measure the effect of the
+ * concurrency and the retries.
+ *
+ * @author Andreas Huber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PublishBenchmark {
+
+	/** The space key used by the benchmark. */
+	private static final String SPACE = "BENCH";
+
+	/** The number of pages of the site. */
+	@Param({ "100", "1000", "10000" })
+	private int pages;
+
+	/** The maximum number of pages published concurrently. */
+	@Param({ "1", "8" })
+	private int concurrency;
+
+	/** The latency of every response of the stub in milliseconds. */
+	@Param({ "0" })
+	private int latency;
+
+	/** The share of requests rejected by the stub with 429. */
+	@Param({ "0" })
+	private double throttleRate;
+
+	/** What is published. */
+	@Param({ "initial", "unchanged", "unchanged-without-state" })
+	private String mode;
+
+	/** The generated site. */
+	private Path site;
+
+	/** The stub of Confluence. */
+	private ConfluenceStub stub;
+
+	/** The client under test. */
+	private ConfluenceClient client;
+
+	/** The mapper of the site. */
+	private Configuration.Mapper mapper;
+
+	/** The pages of the site. */
+	private PageTree tree;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		site = SyntheticSite.generate(pages, SyntheticSite.Shape.MIXED);
+		stub = new ConfluenceStub();
+		stub.addSpace(SPACE);
+		stub.setLatency(Duration.ofMillis(latency), Duration.ZERO);
+		stub.setThrottling(throttleRate, Duration.ZERO);
+		mapper = new Configuration.Mapper(SPACE, "Home", site.toString());
+		final var config = new Configuration();
+		config.setUrl(stub.getUrl());
+		config.setUsername("user");
+		config.setPassword("token");
+		config.setConcurrency(concurrency);
+		config.getConnection().setMaxConnectionsPerRoute(Math.max(16, concurrency));
+		config.setMappers(Set.of(mapper));
+		final var parser = new AntoraParser(config);
+		client = new ConfluenceClient(config, parser, new ConfluenceTransformer());
+		tree = parser.resolvePages(site);
+	}
+
+	@Setup(Level.Iteration)
+	public void prepare() throws Exception {
+		stub.reset();
+		Files.deleteIfExists(PublishState.fileOf(mapper));
+		if (!"initial".equals(mode)) {
+			client.updatePages(mapper, tree, new PublishReport.MapperReport(SPACE));
+			client.clearRenderCache();
+			if ("unchanged-without-state".equals(mode)) {
+				Files.deleteIfExists(PublishState.fileOf(mapper));
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		client.close();
+		stub.close();
+		Files.deleteIfExists(PublishState.fileOf(mapper));
+		SyntheticSite.delete(site);
+	}
+
+	@Benchmark
+	public PublishReport.MapperReport updatePages() throws Exception {
+		final var report = new PublishReport.MapperReport(SPACE);
+		client.updatePages(mapper, tree, report);
+		client.clearRenderCache();
+		if (report.getFailed() > 0) {
+			throw new IllegalStateException(report.getFailed() + " pages failed");
+		}
+		return report;
+	}
+}
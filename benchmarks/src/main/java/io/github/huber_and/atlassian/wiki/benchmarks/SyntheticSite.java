@@ -0,0 +1,229 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates an Antora site with a given number of pages.
+ *
+ * The pages form a tree with up to {@value #FAN_OUT} children per page, listed in the
+ * navigation menu of the index. To keep large sites small on disk, the other pages only
+ * carry a short menu. Every page contains an article followed by an embedded SVG and a
+ * search index, so parsers reading the whole file pay for them. The content of the articles depends on the {@link Shape}.
+ *
+ * @author Andreas Huber
+ */
+public final class SyntheticSite {
+
+	/** The maximum number of children of a page. */
+	private static final int FAN_OUT = 10;
+
+	/** Number of distinct images referenced by the pages. */
+	private static final int IMAGES = 20;
+
+	/**
+	 * The content of the generated pages.
+	 */
+	public enum Shape {
+		/** Paragraphs, lists and tables. */
+		TEXT,
+		/** Mostly code listings. */
+		CODE,
+		/** Mostly images. */
+		IMAGES,
+		/** A mix of all of them. */
+		MIXED
+	}
+
+	private SyntheticSite() {
+	}
+
+	/**
+	 * Generates a site into a new temporary directory.
+	 *
+	 * @param pages the number of pages
+	 * @param shape the content of the pages
+	 * @return the root directory of the site containing the index.html
+	 * @throws IOException if the site could not be written
+	 */
+	public static Path generate(final int pages, final Shape shape) throws IOException {
+		final var root = Files.createTempDirectory("antora-site-");
+		final var random = new Random(pages);
+		final var images = root.resolve("_images");
+		Files.createDirectories(images);
+		for (var i = 0; i < IMAGES; i++) {
+			final var bytes = new byte[4096 + random.nextInt(16384)];
+			random.nextBytes(bytes);
+			Files.write(images.resolve("image-" + i + ".png"), bytes);
+		}
+		final var trailer = trailer(random);
+		write(root.resolve("index.html"), "Home", menu(pages), article("Home", shape, 0, random), trailer);
+		final var menu = menu(0);
+		for (var i = 1; i <= pages; i++) {
+			write(root.resolve(file(i)), "Page " + i, menu, article("Page " + i, shape, i, random), trailer);
+		}
+		return root;
+	}
+
+	/**
+	 * Deletes a generated site.
+	 *
+	 * @param root the root directory of the site
+	 * @throws IOException if the site could not be deleted
+	 */
+	public static void delete(final Path root) throws IOException {
+		if (root == null) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.delete(file);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private static String file(final int page) {
+		return "page-" + page + ".html";
+	}
+
+	private static void write(final Path file, final String title, final String menu, final String article,
+			final String trailer) throws IOException {
+		final var html = new StringBuilder(menu.length() + article.length() + trailer.length() + 512);
+		html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"utf-8\"/><title>").append(title)
+				.append("</title></head>\n<body class=\"article\"><div class=\"body\"><div class=\"nav-container\">")
+				.append(menu).append("</div><main class=\"article\"><div class=\"content\">").append(article)
+				.append("</div></main></div>").append(trailer).append("</body></html>\n");
+		Files.writeString(file, html, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Builds the navigation menu. Page i has the pages i * FAN_OUT + 1 to i * FAN_OUT +
+	 * FAN_OUT as children, the pages 1 to FAN_OUT are the top level pages.
+	 */
+	private static String menu(final int pages) {
+		final var menu = new StringBuilder(pages * 160 + 256);
+		menu.append("<div class=\"nav-panel-menu is-active\" data-panel=\"menu\"><nav class=\"nav-menu\">")
+				.append("<h3 class=\"title\"><a href=\"index.html\">Home</a></h3>")
+				.append("<ul class=\"nav-list\"><li class=\"nav-item is-active\" data-depth=\"0\">");
+		children(menu, 0, 1, pages);
+		menu.append("</li></ul></nav></div>");
+		return menu.toString();
+	}
+
+	private static void children(final StringBuilder menu, final int parent, final int depth, final int pages) {
+		final var first = parent * FAN_OUT + 1;
+		if (first > pages) {
+			return;
+		}
+		menu.append("<ul class=\"nav-list\">");
+		for (var page = first; page < first + FAN_OUT && page <= pages; page++) {
+			menu.append("<li class=\"nav-item\" data-depth=\"").append(depth)
+					.append("\"><button class=\"nav-item-toggle\"></button><a class=\"nav-link\" href=\"")
+					.append(file(page)).append("\">Page ").append(page).append("</a>");
+			children(menu, page, depth + 1, pages);
+			menu.append("</li>");
+		}
+		menu.append("</ul>");
+	}
+
+	private static String article(final String title, final Shape shape, final int page, final Random random) {
+		final var article = new StringBuilder(16384);
+		article.append("<article class=\"doc\"><h1 class=\"page\">").append(title).append("</h1>");
+		for (var section = 0; section < 6; section++) {
+			article.append("<div class=\"sect1\"><h2 id=\"_section_").append(section).append("\"><a class=\"anchor\" href=\"#_section_")
+					.append(section).append("\"></a>Section ").append(section).append("</h2><div class=\"sectionbody\">");
+			final var kind = shape == Shape.MIXED ? Shape.values()[(page + section) % 3] : shape;
+			switch (kind) {
+			case CODE -> {
+				paragraph(article, random);
+				for (var i = 0; i < 3; i++) {
+					code(article, random);
+				}
+			}
+			case IMAGES -> {
+				paragraph(article, random);
+				for (var i = 0; i < 3; i++) {
+					article.append("<div class=\"imageblock\"><div class=\"content\"><img src=\"_images/image-")
+							.append(random.nextInt(IMAGES)).append(".png\" alt=\"Image\" width=\"600\"></div></div>");
+				}
+			}
+			default -> {
+				for (var i = 0; i < 3; i++) {
+					paragraph(article, random);
+				}
+				article.append("<div class=\"ulist\"><ul>");
+				for (var i = 0; i < 5; i++) {
+					article.append("<li><p>Item ").append(i).append(" with <code>inline</code> &amp; text</p></li>");
+				}
+				article.append("</ul></div><table class=\"tableblock\"><tbody>");
+				for (var i = 0; i < 5; i++) {
+					article.append("<tr><td class=\"tableblock\"><p class=\"tableblock\">Cell ").append(i)
+							.append("</p></td><td class=\"tableblock\"><p class=\"tableblock\">Value<br>next</p></td></tr>");
+				}
+				article.append("</tbody></table>");
+			}
+			}
+			article.append("</div></div>");
+		}
+		article.append("</article>");
+		return article.toString();
+	}
+
+	private static void paragraph(final StringBuilder article, final Random random) {
+		article.append("<div class=\"paragraph\"><p>");
+		for (var i = 0; i < 60; i++) {
+			article.append("word").append(random.nextInt(1000)).append(i % 12 == 11 ? ". " : " ");
+		}
+		article.append("<a href=\"#_section_0\">link</a>&#160;&amp; more.</p></div>");
+	}
+
+	private static void code(final StringBuilder article, final Random random) {
+		article.append("<div class=\"listingblock\"><div class=\"content\"><pre class=\"highlightjs highlight\">")
+				.append("<code class=\"language-java hljs\" data-lang=\"java\">");
+		for (var line = 0; line < 30; line++) {
+			article.append("if (value").append(random.nextInt(100)).append(" &lt; limit &amp;&amp; list.size() &gt; 0) {\n")
+					.append("    map.put(\"key\", List.&lt;String&gt;of());\n}\n");
+		}
+		article.append("</code></pre></div></div>");
+	}
+
+	private static String trailer(final Random random) {
+		final var trailer = new StringBuilder(64 * 1024);
+		trailer.append("<div class=\"footer\"><svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 1000 1000\">");
+		for (var i = 0; i < 1000; i++) {
+			trailer.append("<path d=\"M").append(random.nextInt(1000)).append(' ').append(random.nextInt(1000))
+					.append("L").append(random.nextInt(1000)).append(' ').append(random.nextInt(1000)).append("\"/>");
+		}
+		trailer.append("</svg></div><script>window.antoraSearch={\"index\":\"");
+		for (var i = 0; i < 2000; i++) {
+			trailer.append("term").append(i).append(' ');
+		}
+		trailer.append("\"}</script>");
+		return trailer.toString();
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.huber_and.atlassian.wiki.Configuration;
+import io.github.huber_and.atlassian.wiki.Page;
+import io.github.huber_and.atlassian.wiki.parser.AntoraParser;
+import io.github.huber_and.atlassian.wiki.transformer.ConfluenceTransformer;
+import io.github.huber_and.atlassian.wiki.transformer.Transformer;
+
+/**
+ * Benchmarks of the {@link ConfluenceTransformer} including the serialization to storage
+ * format.
+ *
+ * The transformer modifies the content, so every invocation transforms a copy of the
+ * parsed article. {@code copy} measures the copy alone to separate its cost.
+ *
+ * @author Andreas Huber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformerBenchmark {
+
+	/** The content of the page. */
+	@Param({ "TEXT", "CODE", "IMAGES" })
+	private SyntheticSite.Shape shape;
+
+	/** The generated site. */
+	private Path site;
+
+	/** The transformed page. */
+	private Page page;
+
+	/** The parsed article of the page. */
+	private Element content;
+
+	/** The transformer. */
+	private final ConfluenceTransformer transformer = new ConfluenceTransformer();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		site = SyntheticSite.generate(1, shape);
+		final var parser = new AntoraParser(new Configuration());
+		page = parser.resolvePages(site).getRoots().getFirst();
+		content = parser.loadContent(page);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticSite.delete(site);
+	}
+
+	@Benchmark
+	public Element copy() {
+		return content.clone();
+	}
+
+	@Benchmark
+	public Transformer.Result transform() {
+		return transformer.transform(page, content.clone());
+	}
+}
@@ -15,7 +15,10 @@
  */
 package io.github.huber_and.maven.atlassian.wiki;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -28,6 +31,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import io.github.huber_and.atlassian.wiki.Configuration;
+import io.github.huber_and.atlassian.wiki.PublishReport;
 import io.github.huber_and.atlassian.wiki.Publisher;
 
 /**
@@ -74,6 +78,34 @@ public class PagePublisherMojo extends AbstractMojo {
 	@Parameter(property = "password")
 	private String password;
 
+	/** Maximum number of pages published concurrently across all mappers. */
+	@Parameter(property = "concurrency", defaultValue = "1")
+	private int concurrency;
+
+	/** Number of threads rendering pages, 0 for one per available processor. */
+	@Parameter(property = "renderThreads", defaultValue = "0")
+	private int renderThreads;
+
+	/** Render all pages before the first upload instead of just ahead of it. */
+	@Parameter(property = "preRender", defaultValue = "false")
+	private boolean preRender;
+
+	/** File the summary and the metrics of the run are written to as JSON, none if not set. */
+	@Parameter(property = "reportFile")
+	private File reportFile;
+
+	/** Fail the build if a page or a whole mapper failed to publish. */
+	@Parameter(property = "failOnError", defaultValue = "false")
+	private boolean failOnError;
+
+	/** Settings of the pooled HTTP connections to Confluence. */
+	@Parameter
+	private Configuration.Connection connection;
+
+	/** Handling of the pages below the root page which are no longer published. */
+	@Parameter
+	private Configuration.Cleanup cleanup;
+
 	/** The current Maven session, used to access server configuration. */
 	@Parameter(defaultValue = "${session}", readonly = true, required = true)
 	private MavenSession session;
@@ -86,17 +118,50 @@ public class PagePublisherMojo extends AbstractMojo {
 	 * Executes the Maven Mojo to publish pages to Confluence.
 	 *
 	 * Builds the configuration from parameters and Maven settings, then runs the publisher.
+	 * The summary and the metrics are logged and written before a failed run fails the build.
 	 *
 	 * @throws MojoExecutionException if an error occurs during execution
-	 * @throws MojoFailureException if the publication fails
+	 * @throws MojoFailureException if a page or mapper failed and {@code failOnError} is set
 	 */
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		final var uri = URI.create(url);
 		getLog().info("Publish pages to " + uri.getHost());
+		PublishReport report;
+		try (var publisher = new Publisher(configuration())) {
+			report = publisher.publish();
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Failed to close the connections to " + uri.getHost(), e);
+		}
+		logReport(report);
+		logMetrics(report);
+		writeReport(report);
+		if (failOnError && report.hasFailures()) {
+			final var aborted = report.getMappers().stream().filter(m -> m.getError() != null).count();
+			throw new MojoFailureException(String.format("Publishing to %s failed for %d pages, %d mappers aborted",
+					uri.getHost(), report.getFailed(), aborted));
+		}
+	}
+
+	/**
+	 * Builds the configuration of the publisher from the parameters and the Maven settings.
+	 *
+	 * @return the configuration
+	 */
+	protected Configuration configuration() {
+		final var uri = URI.create(url);
 		final var config = new Configuration();
 		config.setUrl(url);
 		config.setMappers(mappers);
+		config.setConcurrency(concurrency);
+		config.setRenderThreads(renderThreads);
+		config.setPreRender(preRender);
+		if (connection != null) {
+			config.setConnection(connection);
+		}
+		if (cleanup != null) {
+			config.setCleanup(cleanup);
+		}
 		if (StringUtils.isBlank(username)) {
 			final var server = session.getSettings().getServer(uri.getHost());
 			if (server != null) {
@@ -107,9 +172,73 @@ public class PagePublisherMojo extends AbstractMojo {
 			config.setUsername(username);
 			config.setPassword(password);
 		}
-		final var publisher = new Publisher(config);
-		publisher.publish();
+		return config;
+	}
+
+	/**
+	 * Writes the report of the run to the report file, if one is configured.
+	 *
+	 * @param report the report of the run
+	 * @throws MojoExecutionException if the report could not be written
+	 */
+	protected void writeReport(final PublishReport report) throws MojoExecutionException {
+		if (reportFile != null) {
+			try {
+				report.write(reportFile.toPath());
+				getLog().info("Wrote report to " + reportFile);
+			} catch (final IOException e) {
+				throw new MojoExecutionException("Failed to write report " + reportFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Logs the summary of the run as table with one row per mapper.
+	 *
+	 * @param report the report of the run
+	 */
+	protected void logReport(final PublishReport report) {
+		final var format = "%-20s %8s %8s %8s %8s %10s";
+		getLog().info(String.format(format, "Space", "Created", "Updated", "Skipped", "Failed", "Time"));
+		for (final var mapper : report.getMappers()) {
+			final var row = String.format(format, mapper.getSpaceKey(), mapper.getCreated(), mapper.getUpdated(),
+					mapper.getSkipped(), mapper.getFailed(), mapper.getDuration().toMillis() + " ms");
+			if (mapper.getError() != null) {
+				getLog().warn(row + " aborted: " + mapper.getError().getMessage());
+			} else if (mapper.getFailed() > 0) {
+				getLog().warn(row);
+			} else {
+				getLog().info(row);
+			}
+			if (!mapper.getOrphans().isEmpty()) {
+				getLog().warn(String.format("%-20s %d orphaned pages, %d cleaned up: %s", "", mapper.getOrphans().size(),
+						mapper.getCleaned(), String.join(", ", mapper.getOrphans())));
+			}
+		}
+		getLog().info(String.format(format, "Total", report.getCreated(), report.getUpdated(), report.getSkipped(),
+				report.getFailed(), ""));
+	}
+
+	/**
+	 * Logs the timers of the run as table with one row per phase and API operation, followed
+	 * by the counters.
+	 *
+	 * @param report the report of the run
+	 */
+	protected void logMetrics(final PublishReport report) {
+		final var metrics = report.getMetrics();
+		if (!metrics.getTimers().isEmpty()) {
+			final var format = "%-36s %8s %10s %10s %10s %10s";
+			getLog().info(String.format(format, "Timer", "Count", "Total", "Mean", "p95", "Max"));
+			metrics.getTimers().forEach((name, timer) -> getLog().info(String.format(format, name,
+					timer.getCount(), millis(timer.getTotal()), millis(timer.getMean()),
+					millis(timer.percentile(0.95)), millis(timer.getMax()))));
+		}
+		metrics.getCounters().forEach((name, value) -> getLog().info(String.format("%-36s %8d", name, value)));
+	}
 
+	private static String millis(final Duration duration) {
+		return duration.toMillis() + " ms";
 	}
 
 }
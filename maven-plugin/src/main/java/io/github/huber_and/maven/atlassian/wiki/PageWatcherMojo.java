@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.maven.atlassian.wiki;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import io.github.huber_and.atlassian.wiki.PublishReport;
+import io.github.huber_and.atlassian.wiki.Publisher;
+
+/**
+ * Maven Mojo publishing pages to Confluence whenever their sources change.
+ *
+ * The Mojo publishes all pages like the {@code publish} goal and then keeps running,
+ * publishing the pages whose files changed, e.g. while Antora runs in watch mode. It takes
+ * the same parameters as the {@code publish} goal and runs until Maven is stopped.
+ *
+ * @author Andreas Huber
+ */
+@Mojo(name = "watch", defaultPhase = LifecyclePhase.NONE)
+public class PageWatcherMojo extends PagePublisherMojo {
+
+	/** Milliseconds without further changes before the changed pages are published. */
+	@Parameter(property = "debounce", defaultValue = "500")
+	private long debounce;
+
+	/**
+	 * Publishes all pages and then the changed pages until Maven is stopped.
+	 *
+	 * Failed pages are logged and published again with the next change, so
+	 * {@code failOnError} does not apply.
+	 *
+	 * @throws MojoExecutionException if the sources could not be watched
+	 */
+	@Override
+	public void execute() throws MojoExecutionException {
+		final var config = configuration();
+		try (var publisher = new Publisher(config)) {
+			getLog().info("Watch " + config.getMappers().size() + " mappers, press Ctrl+C to stop");
+			publisher.watch(Duration.ofMillis(debounce), this::log);
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Failed to watch the sources", e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			getLog().info("Stopped watching");
+		}
+	}
+
+	private void log(final PublishReport report) {
+		logReport(report);
+		logMetrics(report);
+		try {
+			writeReport(report);
+		} catch (final MojoExecutionException e) {
+			getLog().warn(e.getMessage(), e.getCause());
+		}
+	}
+}
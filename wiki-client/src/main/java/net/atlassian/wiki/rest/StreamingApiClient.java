@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * API client decoding JSON responses directly from the response stream.
+ *
+ * The generated client reads the whole body into a String before decoding it, which for
+ * large listings allocates the body twice. This client hands the content stream of the
+ * response to a {@link JsonParser} instead, so the body is decoded while it is received.
+ * An empty body still decodes to null. Binary, file and text responses are handled by the
+ * generated client.
+ *
+ * @author Andreas Huber
+ */
+public class StreamingApiClient extends ApiClient {
+
+	/**
+	 * Constructs a client sending its requests with the given HTTP client.
+	 *
+	 * @param httpClient the HTTP client
+	 */
+	public StreamingApiClient(final CloseableHttpClient httpClient) {
+		super(httpClient);
+	}
+
+	@Override
+	public <T> T deserialize(final CloseableHttpResponse response, final TypeReference<T> valueType)
+			throws ApiException, IOException, ParseException {
+		if (valueType == null) {
+			return null;
+		}
+		final HttpEntity entity = response.getEntity();
+		final Type valueRawType = valueType.getType();
+		final String mimeType = getResponseMimeType(response);
+		if (entity == null || valueRawType.equals(byte[].class) || valueRawType.equals(File.class)
+				|| mimeType != null && !isJsonMime(mimeType)) {
+			return super.deserialize(response, valueType);
+		}
+		try (InputStream content = entity.getContent(); JsonParser parser = objectMapper.createParser(content)) {
+			if (parser.nextToken() == null) {
+				// returns null for empty body
+				return null;
+			}
+			return objectMapper.readValue(parser, valueType);
+		}
+	}
+}
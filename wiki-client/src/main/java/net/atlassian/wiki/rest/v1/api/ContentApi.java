@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v1.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import net.atlassian.wiki.rest.ApiClient;
+import net.atlassian.wiki.rest.ApiException;
+import net.atlassian.wiki.rest.BaseApi;
+import net.atlassian.wiki.rest.Configuration;
+import net.atlassian.wiki.rest.Pair;
+
+/**
+ * API for archiving and moving content.
+ *
+ * This API class provides the Confluence REST API v1 endpoints for operations on pages
+ * which have no counterpart in the v2 API.
+ *
+ * The methods follow the structure of the generated API classes.
+ *
+ * @author Andreas Huber
+ */
+public class ContentApi extends BaseApi {
+
+	/**
+	 * Constructs a ContentApi with the default API client.
+	 */
+	public ContentApi() {
+		super(Configuration.getDefaultApiClient());
+	}
+
+	/**
+	 * Constructs a ContentApi with the given API client.
+	 *
+	 * @param apiClient the API client to use for requests
+	 */
+	public ContentApi(ApiClient apiClient) {
+		super(apiClient);
+	}
+
+	/**
+	 * Archive pages Archives a list of pages. The pages to be archived are specified as a
+	 * list of content IDs. This API accepts the archival request and returns a task ID. The
+	 * archival process happens asynchronously. Each request can archive up to 300 pages.
+	 * **[Permissions](https://confluence.atlassian.com/x/_AozKw) required**: Permission
+	 * to archive the pages.
+	 *
+	 * @param ids The IDs of the pages to archive. (required)
+	 * @return the long running task, with its &#x60;id&#x60; and &#x60;links&#x60;
+	 * @throws ApiException if fails to make API call
+	 */
+	public Map<String, Object> archivePages(@jakarta.annotation.Nonnull List<Long> ids) throws ApiException {
+		return this.archivePages(ids, Collections.emptyMap());
+	}
+
+	/**
+	 * Archive pages Archives a list of pages. The pages to be archived are specified as a
+	 * list of content IDs. This API accepts the archival request and returns a task ID. The
+	 * archival process happens asynchronously. Each request can archive up to 300 pages.
+	 * **[Permissions](https://confluence.atlassian.com/x/_AozKw) required**: Permission
+	 * to archive the pages.
+	 *
+	 * @param ids               The IDs of the pages to archive. (required)
+	 * @param additionalHeaders additionalHeaders for this call
+	 * @return the long running task, with its &#x60;id&#x60; and &#x60;links&#x60;
+	 * @throws ApiException if fails to make API call
+	 */
+	public Map<String, Object> archivePages(@jakarta.annotation.Nonnull List<Long> ids,
+			Map<String, String> additionalHeaders) throws ApiException {
+		// verify the required parameter 'ids' is set
+		if (ids == null || ids.isEmpty()) {
+			throw new ApiException(400, "Missing the required parameter 'ids' when calling archivePages");
+		}
+		List<Map<String, Object>> pages = new ArrayList<Map<String, Object>>();
+		for (Long id : ids) {
+			pages.add(Collections.singletonMap("id", id));
+		}
+		Object localVarPostBody = Collections.singletonMap("pages", pages);
+
+		return invoke("/content/archive", "POST", localVarPostBody, additionalHeaders,
+				new TypeReference<Map<String, Object>>() {
+				});
+	}
+
+	/**
+	 * Move a page to a new location relative to a target page Moves a page and its
+	 * descendants. The position is one of &#x60;before&#x60; or &#x60;after&#x60; to make
+	 * the page a sibling of the target, or &#x60;append&#x60; to make it the last child of
+	 * the target. **[Permissions](https://confluence.atlassian.com/x/_AozKw) required**:
+	 * Permission to edit the page and the target.
+	 *
+	 * @param pageId   The ID of the page to be moved. (required)
+	 * @param position The position to move the page to relative to the target page.
+	 *                 (required)
+	 * @param targetId The ID of the target page for this operation. (required)
+	 * @throws ApiException if fails to make API call
+	 */
+	public void movePage(@jakarta.annotation.Nonnull String pageId, @jakarta.annotation.Nonnull String position,
+			@jakarta.annotation.Nonnull String targetId) throws ApiException {
+		this.movePage(pageId, position, targetId, Collections.emptyMap());
+	}
+
+	/**
+	 * Move a page to a new location relative to a target page Moves a page and its
+	 * descendants. The position is one of &#x60;before&#x60; or &#x60;after&#x60; to make
+	 * the page a sibling of the target, or &#x60;append&#x60; to make it the last child of
+	 * the target. **[Permissions](https://confluence.atlassian.com/x/_AozKw) required**:
+	 * Permission to edit the page and the target.
+	 *
+	 * @param pageId            The ID of the page to be moved. (required)
+	 * @param position          The position to move the page to relative to the target
+	 *                          page. (required)
+	 * @param targetId          The ID of the target page for this operation. (required)
+	 * @param additionalHeaders additionalHeaders for this call
+	 * @throws ApiException if fails to make API call
+	 */
+	public void movePage(@jakarta.annotation.Nonnull String pageId, @jakarta.annotation.Nonnull String position,
+			@jakarta.annotation.Nonnull String targetId, Map<String, String> additionalHeaders) throws ApiException {
+		// verify the required parameters are set
+		if (pageId == null || position == null || targetId == null) {
+			throw new ApiException(400, "Missing the required parameters when calling movePage");
+		}
+
+		// create path and map variables
+		String localVarPath = "/content/{pageId}/move/{position}/{targetId}"
+				.replaceAll("\\{" + "pageId" + "\\}", apiClient.escapeString(apiClient.parameterToString(pageId)))
+				.replaceAll("\\{" + "position" + "\\}", apiClient.escapeString(apiClient.parameterToString(position)))
+				.replaceAll("\\{" + "targetId" + "\\}", apiClient.escapeString(apiClient.parameterToString(targetId)));
+
+		invoke(localVarPath, "PUT", null, additionalHeaders, null);
+	}
+
+	private <T> T invoke(String localVarPath, String method, Object localVarPostBody,
+			Map<String, String> additionalHeaders, TypeReference<T> localVarReturnType) throws ApiException {
+		StringJoiner localVarQueryStringJoiner = new StringJoiner("&");
+		List<Pair> localVarQueryParams = new ArrayList<Pair>();
+		List<Pair> localVarCollectionQueryParams = new ArrayList<Pair>();
+		Map<String, String> localVarHeaderParams = new HashMap<String, String>();
+		Map<String, String> localVarCookieParams = new HashMap<String, String>();
+		Map<String, Object> localVarFormParams = new HashMap<String, Object>();
+
+		localVarHeaderParams.putAll(additionalHeaders);
+
+		final String[] localVarAccepts = { "application/json" };
+		final String localVarAccept = apiClient.selectHeaderAccept(localVarAccepts);
+
+		final String[] localVarContentTypes = { "application/json" };
+		final String localVarContentType = apiClient.selectHeaderContentType(localVarContentTypes);
+
+		String[] localVarAuthNames = new String[] { "basicAuth", "oAuthDefinitions" };
+
+		return apiClient.invokeAPI(localVarPath, method, localVarQueryParams, localVarCollectionQueryParams,
+				localVarQueryStringJoiner.toString(), localVarPostBody, localVarHeaderParams, localVarCookieParams,
+				localVarFormParams, localVarAccept, localVarContentType, localVarAuthNames, localVarReturnType);
+	}
+
+	@Override
+	public <T> T invokeAPI(String url, String method, Object request, TypeReference<T> returnType,
+			Map<String, String> additionalHeaders) throws ApiException {
+		return invoke(url.replace(apiClient.getBaseURL(), ""), method, request, additionalHeaders, returnType);
+	}
+}
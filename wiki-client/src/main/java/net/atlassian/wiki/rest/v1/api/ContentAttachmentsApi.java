@@ -13,6 +13,9 @@
 package net.atlassian.wiki.rest.v1.api;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,6 +23,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
 
+import org.apache.hc.client5.http.entity.mime.HttpMultipartMode;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import net.atlassian.wiki.rest.ApiClient;
@@ -228,6 +239,99 @@ public class ContentAttachmentsApi extends BaseApi {
 				localVarFormParams, localVarAccept, localVarContentType, localVarAuthNames, null);
 	}
 
+	/**
+	 * Create or update attachments Adds several attachments to a piece of content in a
+	 * single multipart request. Existing attachments with the same file name are
+	 * updated, i.e. a new version of the attachment is created. The files are streamed
+	 * from disk while the request is written, so large files are never held in memory.
+	 * 
+	 * @param id        The ID of the content to add the attachments to. (required)
+	 * @param files     The files to upload, each sent as &#x60;file&#x60; part.
+	 *                  (required)
+	 * @param minorEdit If &#x60;minorEdits&#x60; is set to &#39;true&#39;, no
+	 *                  notification email or activity stream will be generated.
+	 *                  (required)
+	 * @param status    The status of the content that the attachments are being
+	 *                  added to. (optional, default to current)
+	 * @param comments  The comments for the attachments in the same order as the
+	 *                  files, or null for no comments. (optional)
+	 * @throws ApiException if fails to make API call
+	 */
+	public void createOrUpdateAttachments(@jakarta.annotation.Nonnull String id,
+			@jakarta.annotation.Nonnull List<Path> files, @jakarta.annotation.Nonnull String minorEdit,
+			@jakarta.annotation.Nullable String status, @jakarta.annotation.Nullable List<String> comments)
+			throws ApiException {
+		if (id == null || files == null || files.isEmpty() || minorEdit == null) {
+			throw new ApiException(400, "Missing the required parameters when calling createOrUpdateAttachments");
+		}
+		if (comments != null && comments.size() != files.size()) {
+			throw new ApiException(400, "Every file must have a comment when calling createOrUpdateAttachments");
+		}
+
+		List<Pair> localVarQueryParams = new ArrayList<Pair>();
+		Map<String, String> localVarHeaderParams = new HashMap<String, String>();
+		Map<String, String> localVarCookieParams = new HashMap<String, String>();
+		localVarQueryParams.addAll(apiClient.parameterToPair("status", status));
+		// the ApiClient sends a single part per form parameter, so the request with several
+		// file parts is sent directly, authenticated the same way the ApiClient does
+		for (String authName : new String[] { "basicAuth", "oAuthDefinitions" }) {
+			apiClient.getAuthentication(authName).applyToParams(localVarQueryParams, localVarHeaderParams,
+					localVarCookieParams);
+		}
+
+		StringBuilder url = new StringBuilder(apiClient.getBaseURL()).append("/content/")
+				.append(apiClient.escapeString(id)).append("/child/attachment");
+		String prefix = "?";
+		for (Pair param : localVarQueryParams) {
+			if (param.getValue() != null) {
+				url.append(prefix).append(apiClient.escapeString(param.getName())).append('=')
+						.append(apiClient.escapeString(param.getValue()));
+				prefix = "&";
+			}
+		}
+
+		MultipartEntityBuilder multipart = MultipartEntityBuilder.create().setMode(HttpMultipartMode.EXTENDED)
+				.setCharset(StandardCharsets.UTF_8);
+		ContentType text = ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8);
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				multipart.addPart("file", new PathBody(files.get(i)));
+				if (comments != null) {
+					multipart.addTextBody("comment", comments.get(i), text);
+				}
+			}
+		} catch (IOException e) {
+			throw new ApiException(e);
+		}
+		multipart.addTextBody("minorEdit", minorEdit, text);
+
+		ClassicRequestBuilder builder = ClassicRequestBuilder.put(url.toString())
+				.addHeader("Accept", "application/json").addHeader("X-Atlassian-Token", "nocheck")
+				.setEntity(multipart.build());
+		localVarHeaderParams.forEach(builder::addHeader);
+
+		ApiException failure;
+		try {
+			failure = apiClient.getHttpClient().execute(builder.build(), HttpClientContext.create(), response -> {
+				int statusCode = response.getCode();
+				String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity()) : null;
+				if (statusCode >= 200 && statusCode < 300) {
+					return null;
+				}
+				Map<String, List<String>> headers = new HashMap<String, List<String>>();
+				for (Header header : response.getHeaders()) {
+					headers.computeIfAbsent(header.getName(), k -> new ArrayList<String>()).add(header.getValue());
+				}
+				return new ApiException(body, statusCode, headers, body);
+			});
+		} catch (IOException e) {
+			throw new ApiException(e);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
 	@Override
 	public <T> T invokeAPI(String url, String method, Object request, TypeReference<T> returnType,
 			Map<String, String> additionalHeaders) throws ApiException {
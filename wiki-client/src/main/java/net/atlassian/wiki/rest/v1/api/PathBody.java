@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v1.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hc.client5.http.entity.mime.AbstractContentBody;
+import org.apache.hc.core5.http.ContentType;
+
+/**
+ * Multipart body streaming the content of a file.
+ *
+ * The file is read through a {@link FileChannel} into a fixed size buffer while the request
+ * is written, so the memory used per upload does not depend on the file size. The length
+ * of the body is known upfront, which allows sending the request with a content length
+ * instead of chunked encoding.
+ *
+ * @author Andreas Huber
+ */
+public class PathBody extends AbstractContentBody {
+
+	/** Size of the buffer used to copy the file into the request. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The file to upload. */
+	private final Path file;
+
+	/**
+	 * Constructs a body for the given file with the given content type.
+	 *
+	 * @param file the file to upload
+	 * @param contentType the content type of the file
+	 */
+	public PathBody(final Path file, final ContentType contentType) {
+		super(contentType);
+		this.file = file;
+	}
+
+	/**
+	 * Constructs a body for the given file, probing its content type from the file name.
+	 *
+	 * @param file the file to upload
+	 * @throws IOException if the content type could not be determined
+	 */
+	public PathBody(final Path file) throws IOException {
+		this(file, contentTypeOf(file));
+	}
+
+	@Override
+	public String getFilename() {
+		return file.getFileName().toString();
+	}
+
+	@Override
+	public long getContentLength() {
+		try {
+			return Files.size(file);
+		} catch (final IOException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void writeTo(final OutputStream out) throws IOException {
+		final var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (channel.read(buffer) > -1) {
+				buffer.flip();
+				out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+				buffer.clear();
+			}
+		}
+		out.flush();
+	}
+
+	private static ContentType contentTypeOf(final Path file) throws IOException {
+		final var type = Files.probeContentType(file);
+		return type != null ? ContentType.create(type) : ContentType.APPLICATION_OCTET_STREAM;
+	}
+}
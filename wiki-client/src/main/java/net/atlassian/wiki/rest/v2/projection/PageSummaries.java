@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v2.projection;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import net.atlassian.wiki.rest.v2.model.MultiEntityLinks;
+
+/**
+ * One set of results of a page listing, decoded into {@link PageSummary} projections.
+ *
+ * @param results the listed pages
+ * @param links the links of the listing, holding the link to the next set of results
+ * @author Andreas Huber
+ * @see PageSummariesDeserializer
+ */
+@JsonDeserialize(using = PageSummariesDeserializer.class)
+public record PageSummaries(List<PageSummary> results, MultiEntityLinks links) {
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v2.projection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import net.atlassian.wiki.rest.v2.model.MultiEntityLinks;
+
+/**
+ * Decodes a page listing token by token into {@link PageSummaries}.
+ *
+ * Only the fields of the projection are read. Every other value, including nested objects
+ * like the body or the links of a page, is skipped by the parser without being bound, so a
+ * listing of thousands of pages allocates little more than the projections themselves.
+ *
+ * @author Andreas Huber
+ */
+class PageSummariesDeserializer extends StdDeserializer<PageSummaries> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs the deserializer.
+	 */
+	PageSummariesDeserializer() {
+		super(PageSummaries.class);
+	}
+
+	@Override
+	public PageSummaries deserialize(final JsonParser parser, final DeserializationContext context)
+			throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			context.reportWrongTokenException(PageSummaries.class, JsonToken.START_OBJECT, "Expected a page listing");
+		}
+		final List<PageSummary> results = new ArrayList<>();
+		MultiEntityLinks links = null;
+		for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+			final var token = parser.nextToken();
+			if ("results".equals(field) && token == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					results.add(readPage(parser));
+				}
+			} else if ("_links".equals(field) && token == JsonToken.START_OBJECT) {
+				links = readLinks(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return new PageSummaries(results, links);
+	}
+
+	/**
+	 * Reads a page, the parser being positioned at the start of its object.
+	 */
+	private static PageSummary readPage(final JsonParser parser) throws IOException {
+		String id = null;
+		String status = null;
+		String title = null;
+		String spaceId = null;
+		String parentId = null;
+		Integer version = null;
+		for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+			final var token = parser.nextToken();
+			switch (field) {
+				case "id" -> id = parser.getValueAsString();
+				case "status" -> status = parser.getValueAsString();
+				case "title" -> title = parser.getValueAsString();
+				case "spaceId" -> spaceId = parser.getValueAsString();
+				case "parentId" -> parentId = parser.getValueAsString();
+				case "version" -> version = token == JsonToken.START_OBJECT ? readVersion(parser) : null;
+				default -> parser.skipChildren();
+			}
+		}
+		return new PageSummary(id, status, title, spaceId, parentId, version);
+	}
+
+	/**
+	 * Reads the number of a version, the parser being positioned at the start of its object.
+	 */
+	private static Integer readVersion(final JsonParser parser) throws IOException {
+		Integer number = null;
+		for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+			final var token = parser.nextToken();
+			if ("number".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+				number = parser.getIntValue();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return number;
+	}
+
+	/**
+	 * Reads the links of the listing, the parser being positioned at the start of their object.
+	 */
+	private static MultiEntityLinks readLinks(final JsonParser parser) throws IOException {
+		final var links = new MultiEntityLinks();
+		for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+			parser.nextToken();
+			switch (field) {
+				case "next" -> links.setNext(parser.getValueAsString());
+				case "base" -> links.setBase(parser.getValueAsString());
+				default -> parser.skipChildren();
+			}
+		}
+		return links;
+	}
+}
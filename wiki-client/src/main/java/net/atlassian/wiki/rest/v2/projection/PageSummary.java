@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v2.projection;
+
+/**
+ * Projection of a page onto the fields needed to match local pages with remote ones.
+ *
+ * The body, the links and all other optional fields of the listed pages are skipped while
+ * decoding, see {@link PageSummaries}.
+ *
+ * @param id the ID of the page
+ * @param status the status of the page, like {@code current} or {@code archived}
+ * @param title the title of the page
+ * @param spaceId the ID of the space containing the page
+ * @param parentId the ID of the parent page, or null for a page at root level
+ * @param version the number of the current version, or null if not listed
+ * @author Andreas Huber
+ */
+public record PageSummary(String id, String status, String title, String spaceId, String parentId,
+		Integer version) {
+}
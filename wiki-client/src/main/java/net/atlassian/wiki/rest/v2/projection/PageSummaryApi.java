@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.atlassian.wiki.rest.v2.projection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import net.atlassian.wiki.rest.ApiClient;
+import net.atlassian.wiki.rest.ApiException;
+import net.atlassian.wiki.rest.BaseApi;
+import net.atlassian.wiki.rest.Configuration;
+import net.atlassian.wiki.rest.Pair;
+
+/**
+ * API for listing pages as projections.
+ *
+ * This API class provides the v2 page listing endpoints of {@code PageApi}, decoding the
+ * listed pages into {@link PageSummary} projections instead of the full page models. With a
+ * {@link net.atlassian.wiki.rest.StreamingApiClient} the listings are decoded while they are
+ * received, without buffering the response body.
+ *
+ * The methods follow the structure of the generated API classes.
+ *
+ * @author Andreas Huber
+ */
+public class PageSummaryApi extends BaseApi {
+
+	/**
+	 * Constructs a PageSummaryApi with the default API client.
+	 */
+	public PageSummaryApi() {
+		super(Configuration.getDefaultApiClient());
+	}
+
+	/**
+	 * Constructs a PageSummaryApi with the given API client.
+	 *
+	 * @param apiClient the API client to use for requests
+	 */
+	public PageSummaryApi(ApiClient apiClient) {
+		super(apiClient);
+	}
+
+	/**
+	 * Get pages Returns all pages, filtered by their IDs, spaces, status and title. The
+	 * number of results is limited by the &#x60;limit&#x60; parameter and additional results
+	 * (if available) will be available through the &#x60;next&#x60; URL present in the
+	 * &#x60;_links&#x60; of the response.
+	 *
+	 * @param id      Filter the results based on page ids. (optional)
+	 * @param spaceId Filter the results based on space ids. (optional)
+	 * @param status  Filter the results to pages based on their status. (optional)
+	 * @param title   Filter the results to pages based on their title. (optional)
+	 * @param cursor  Used for pagination, this opaque cursor will be returned in the
+	 *                &#x60;next&#x60; URL. (optional)
+	 * @param limit   Maximum number of pages per result to return. (optional, default to 25)
+	 * @return the listed pages and the link to the next set of results
+	 * @throws ApiException if fails to make API call
+	 */
+	public PageSummaries getPages(@jakarta.annotation.Nullable List<Long> id,
+			@jakarta.annotation.Nullable List<Long> spaceId, @jakarta.annotation.Nullable List<String> status,
+			@jakarta.annotation.Nullable String title, @jakarta.annotation.Nullable String cursor,
+			@jakarta.annotation.Nullable Integer limit) throws ApiException {
+		return this.getPages(id, spaceId, status, title, cursor, limit, Collections.emptyMap());
+	}
+
+	/**
+	 * Get pages Returns all pages, filtered by their IDs, spaces, status and title. The
+	 * number of results is limited by the &#x60;limit&#x60; parameter and additional results
+	 * (if available) will be available through the &#x60;next&#x60; URL present in the
+	 * &#x60;_links&#x60; of the response.
+	 *
+	 * @param id                Filter the results based on page ids. (optional)
+	 * @param spaceId           Filter the results based on space ids. (optional)
+	 * @param status            Filter the results to pages based on their status. (optional)
+	 * @param title             Filter the results to pages based on their title. (optional)
+	 * @param cursor            Used for pagination, this opaque cursor will be returned in the
+	 *                          &#x60;next&#x60; URL. (optional)
+	 * @param limit             Maximum number of pages per result to return. (optional,
+	 *                          default to 25)
+	 * @param additionalHeaders additionalHeaders for this call
+	 * @return the listed pages and the link to the next set of results
+	 * @throws ApiException if fails to make API call
+	 */
+	public PageSummaries getPages(@jakarta.annotation.Nullable List<Long> id,
+			@jakarta.annotation.Nullable List<Long> spaceId, @jakarta.annotation.Nullable List<String> status,
+			@jakarta.annotation.Nullable String title, @jakarta.annotation.Nullable String cursor,
+			@jakarta.annotation.Nullable Integer limit, Map<String, String> additionalHeaders) throws ApiException {
+		List<Pair> localVarQueryParams = new ArrayList<Pair>();
+		List<Pair> localVarCollectionQueryParams = new ArrayList<Pair>();
+		localVarCollectionQueryParams.addAll(apiClient.parameterToPairs("multi", "id", id));
+		localVarCollectionQueryParams.addAll(apiClient.parameterToPairs("multi", "space-id", spaceId));
+		localVarCollectionQueryParams.addAll(apiClient.parameterToPairs("multi", "status", status));
+		localVarQueryParams.addAll(apiClient.parameterToPair("title", title));
+		localVarQueryParams.addAll(apiClient.parameterToPair("cursor", cursor));
+		localVarQueryParams.addAll(apiClient.parameterToPair("limit", limit));
+
+		return invoke("/pages", "GET", localVarQueryParams, localVarCollectionQueryParams, additionalHeaders,
+				new TypeReference<PageSummaries>() {
+				});
+	}
+
+	/**
+	 * Get pages in space Returns all pages in a space. The number of results is limited by
+	 * the &#x60;limit&#x60; parameter and additional results (if available) will be available
+	 * through the &#x60;next&#x60; URL present in the &#x60;_links&#x60; of the response.
+	 *
+	 * @param id     The ID of the space for which pages should be returned. (required)
+	 * @param depth  Filter the results to pages at the root level of the space or to all pages
+	 *               in the space. (optional, default to all)
+	 * @param status Filter the results to pages based on their status. (optional)
+	 * @param title  Filter the results to pages based on their title. (optional)
+	 * @param cursor Used for pagination, this opaque cursor will be returned in the
+	 *               &#x60;next&#x60; URL. (optional)
+	 * @param limit  Maximum number of pages per result to return. (optional, default to 25)
+	 * @return the listed pages and the link to the next set of results
+	 * @throws ApiException if fails to make API call
+	 */
+	public PageSummaries getPagesInSpace(@jakarta.annotation.Nonnull Long id,
+			@jakarta.annotation.Nullable String depth, @jakarta.annotation.Nullable List<String> status,
+			@jakarta.annotation.Nullable String title, @jakarta.annotation.Nullable String cursor,
+			@jakarta.annotation.Nullable Integer limit) throws ApiException {
+		return this.getPagesInSpace(id, depth, status, title, cursor, limit, Collections.emptyMap());
+	}
+
+	/**
+	 * Get pages in space Returns all pages in a space. The number of results is limited by
+	 * the &#x60;limit&#x60; parameter and additional results (if available) will be available
+	 * through the &#x60;next&#x60; URL present in the &#x60;_links&#x60; of the response.
+	 *
+	 * @param id                The ID of the space for which pages should be returned.
+	 *                          (required)
+	 * @param depth             Filter the results to pages at the root level of the space or
+	 *                          to all pages in the space. (optional, default to all)
+	 * @param status            Filter the results to pages based on their status. (optional)
+	 * @param title             Filter the results to pages based on their title. (optional)
+	 * @param cursor            Used for pagination, this opaque cursor will be returned in the
+	 *                          &#x60;next&#x60; URL. (optional)
+	 * @param limit             Maximum number of pages per result to return. (optional,
+	 *                          default to 25)
+	 * @param additionalHeaders additionalHeaders for this call
+	 * @return the listed pages and the link to the next set of results
+	 * @throws ApiException if fails to make API call
+	 */
+	public PageSummaries getPagesInSpace(@jakarta.annotation.Nonnull Long id,
+			@jakarta.annotation.Nullable String depth, @jakarta.annotation.Nullable List<String> status,
+			@jakarta.annotation.Nullable String title, @jakarta.annotation.Nullable String cursor,
+			@jakarta.annotation.Nullable Integer limit, Map<String, String> additionalHeaders) throws ApiException {
+		// verify the required parameter 'id' is set
+		if (id == null) {
+			throw new ApiException(400, "Missing the required parameter 'id' when calling getPagesInSpace");
+		}
+
+		// create path and map variables
+		String localVarPath = "/spaces/{id}/pages".replaceAll("\\{" + "id" + "\\}",
+				apiClient.escapeString(apiClient.parameterToString(id)));
+
+		List<Pair> localVarQueryParams = new ArrayList<Pair>();
+		List<Pair> localVarCollectionQueryParams = new ArrayList<Pair>();
+		localVarQueryParams.addAll(apiClient.parameterToPair("depth", depth));
+		localVarCollectionQueryParams.addAll(apiClient.parameterToPairs("multi", "status", status));
+		localVarQueryParams.addAll(apiClient.parameterToPair("title", title));
+		localVarQueryParams.addAll(apiClient.parameterToPair("cursor", cursor));
+		localVarQueryParams.addAll(apiClient.parameterToPair("limit", limit));
+
+		return invoke(localVarPath, "GET", localVarQueryParams, localVarCollectionQueryParams, additionalHeaders,
+				new TypeReference<PageSummaries>() {
+				});
+	}
+
+	private <T> T invoke(String localVarPath, String method, List<Pair> localVarQueryParams,
+			List<Pair> localVarCollectionQueryParams, Map<String, String> additionalHeaders,
+			TypeReference<T> localVarReturnType) throws ApiException {
+		StringJoiner localVarQueryStringJoiner = new StringJoiner("&");
+		Map<String, String> localVarHeaderParams = new HashMap<String, String>();
+		Map<String, String> localVarCookieParams = new HashMap<String, String>();
+		Map<String, Object> localVarFormParams = new HashMap<String, Object>();
+
+		localVarHeaderParams.putAll(additionalHeaders);
+
+		final String[] localVarAccepts = { "application/json" };
+		final String localVarAccept = apiClient.selectHeaderAccept(localVarAccepts);
+
+		final String[] localVarContentTypes = {};
+		final String localVarContentType = apiClient.selectHeaderContentType(localVarContentTypes);
+
+		String[] localVarAuthNames = new String[] { "basicAuth", "oAuthDefinitions" };
+
+		return apiClient.invokeAPI(localVarPath, method, localVarQueryParams, localVarCollectionQueryParams,
+				localVarQueryStringJoiner.toString(), null, localVarHeaderParams, localVarCookieParams,
+				localVarFormParams, localVarAccept, localVarContentType, localVarAuthNames, localVarReturnType);
+	}
+
+	@Override
+	public <T> T invokeAPI(String url, String method, Object request, TypeReference<T> returnType,
+			Map<String, String> additionalHeaders) throws ApiException {
+		if (request != null) {
+			throw new ApiException("Listing endpoints do not accept a request body");
+		}
+		return invoke(url.replace(apiClient.getBaseURL(), ""), method, new ArrayList<Pair>(), new ArrayList<Pair>(),
+				additionalHeaders, returnType);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+import net.atlassian.wiki.rest.ApiException;
+import net.atlassian.wiki.rest.v1.api.ContentAttachmentsApi;
+import net.atlassian.wiki.rest.v2.api.AttachmentApi;
+import net.atlassian.wiki.rest.v2.model.AttachmentBulk;
+
+/**
+ * Synchronizes the attachments of a page with the local files.
+ *
+ * Only new or changed files are uploaded. The SHA-256 checksum of each uploaded file is
+ * stored as attachment comment, so the remote attachments can be compared by file size and
+ * checksum without downloading them. The checksum of a local file is computed once and
+ * shared by all pages referencing it. Changed files of a page are uploaded together in
+ * streaming multipart requests.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class AttachmentSync {
+
+	/** Prefix of the attachment comment holding the checksum of the file. */
+	static final String CHECKSUM_PREFIX = "sha256:";
+
+	/** Maximum number of files uploaded in a single request. */
+	private static final int MAX_FILES_PER_REQUEST = 10;
+
+	/** API for uploading attachments. */
+	private final ContentAttachmentsApi attachmentsApi;
+
+	/** API for listing attachments. */
+	private final AttachmentApi attachmentApi;
+
+	/** Schedules the API calls within the rate limits of the server. */
+	private final RequestScheduler scheduler;
+
+	/** Receives the size of the uploaded files. */
+	private final PublishListener listener;
+
+	/** Checksums of the local files keyed by their path. */
+	private final Map<Path, LocalFile> files = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs an AttachmentSync with the given APIs.
+	 *
+	 * @param attachmentsApi the v1 API for uploading attachments
+	 * @param attachmentApi the v2 API for listing attachments
+	 * @param scheduler the scheduler of the API calls
+	 * @param listener the listener receiving the size of the uploaded files
+	 */
+	public AttachmentSync(final ContentAttachmentsApi attachmentsApi, final AttachmentApi attachmentApi,
+			final RequestScheduler scheduler, final PublishListener listener) {
+		this.attachmentsApi = attachmentsApi;
+		this.attachmentApi = attachmentApi;
+		this.scheduler = scheduler;
+		this.listener = listener;
+	}
+
+	/**
+	 * Uploads the new or changed attachments of a page.
+	 *
+	 * Attachments whose checksum matches the publish state are skipped without any remote
+	 * call. For the remaining ones the existing attachments of the page are listed once and
+	 * only files missing or differing remotely are uploaded. Failures are logged and do not
+	 * abort the synchronization of the other attachments.
+	 *
+	 * @param pageId the ID of the page
+	 * @param attachments the attachments referenced by the page
+	 * @param entry the publish state of the page
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	public void sync(final String pageId, final Collection<Attachment> attachments, final PublishState.Entry entry)
+			throws InterruptedException {
+		final Map<Attachment, LocalFile> pending = new LinkedHashMap<>();
+		for (final Attachment attachment : attachments) {
+			try {
+				final var file = localFile(attachment.getSource());
+				if (!file.digest().equals(entry.getAttachments().get(attachment.getFileName()))) {
+					pending.put(attachment, file);
+				}
+			} catch (final IOException e) {
+				log.error("Failed to read attachment {}", attachment.getSource(), e);
+			}
+		}
+		if (pending.isEmpty()) {
+			log.debug("Attachments of {} are unchanged", pageId);
+			return;
+		}
+		Map<String, AttachmentBulk> remote;
+		try {
+			remote = listAttachments(pageId);
+		} catch (final ApiException e) {
+			log.warn("Failed to list attachments of {}, uploading all changed files", pageId, e);
+			remote = Map.of();
+		}
+		final List<Map.Entry<Attachment, LocalFile>> uploads = new ArrayList<>();
+		for (final Map.Entry<Attachment, LocalFile> item : pending.entrySet()) {
+			final var attachment = item.getKey();
+			final var file = item.getValue();
+			final var existing = remote.get(attachment.getFileName());
+			if (existing != null && Objects.equals(existing.getFileSize(), file.size())
+					&& Objects.equals(existing.getComment(), CHECKSUM_PREFIX + file.digest())) {
+				log.debug("Attachment {} of {} is up to date", attachment.getFileName(), pageId);
+				entry.getAttachments().put(attachment.getFileName(), file.digest());
+			} else {
+				uploads.add(item);
+			}
+		}
+		for (int i = 0; i < uploads.size(); i += MAX_FILES_PER_REQUEST) {
+			upload(pageId, uploads.subList(i, Math.min(i + MAX_FILES_PER_REQUEST, uploads.size())), entry);
+		}
+	}
+
+	/**
+	 * Uploads several attachments to a page in a single multipart request.
+	 *
+	 * @param pageId the ID of the page
+	 * @param uploads the attachments to upload with their local file information
+	 * @param entry the publish state of the page
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private void upload(final String pageId, final List<Map.Entry<Attachment, LocalFile>> uploads,
+			final PublishState.Entry entry) throws InterruptedException {
+		final List<Path> files = new ArrayList<>();
+		final List<String> comments = new ArrayList<>();
+		uploads.forEach(u -> {
+			files.add(u.getKey().getSource());
+			comments.add(CHECKSUM_PREFIX + u.getValue().digest());
+		});
+		try {
+			scheduler.run("createOrUpdateAttachments", true,
+					() -> attachmentsApi.createOrUpdateAttachments(pageId, files, "binary", "current", comments));
+			uploads.forEach(u -> entry.getAttachments().put(u.getKey().getFileName(), u.getValue().digest()));
+			listener.uploaded(pageId, uploads.size(), uploads.stream().mapToLong(u -> u.getValue().size()).sum());
+			log.info("Uploaded {} attachments to {}", uploads.size(), pageId);
+		} catch (final ApiException e) {
+			log.error("Failed to upload attachments {} to {}", uploads.stream().map(u -> u.getKey().getFileName()).toList(),
+					pageId, e);
+		}
+	}
+
+	/**
+	 * Lists the current attachments of a page.
+	 *
+	 * @param pageId the ID of the page
+	 * @return the attachments keyed by their file name
+	 * @throws ApiException if the attachments could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private Map<String, AttachmentBulk> listAttachments(final String pageId)
+			throws ApiException, InterruptedException {
+		final Map<String, AttachmentBulk> result = new HashMap<>();
+		String cursor = null;
+		do {
+			final var next = cursor;
+			final var response = scheduler.execute("getPageAttachments", true, () -> attachmentApi
+					.getPageAttachments(Long.parseLong(pageId), null, next, List.of("current"), null, null,
+							Pagination.LIMIT));
+			response.getResults().forEach(a -> result.put(a.getTitle(), a));
+			cursor = Pagination.nextCursor(response.getLinks());
+		} while (cursor != null);
+		return result;
+	}
+
+	/**
+	 * Returns the size and checksum of a local file.
+	 *
+	 * The checksum is cached and only computed again if the size or modification time of
+	 * the file changed.
+	 *
+	 * @param source the path of the file
+	 * @return the local file information
+	 * @throws IOException if the file could not be read
+	 */
+	private LocalFile localFile(final Path source) throws IOException {
+		final var size = Files.size(source);
+		final var modified = Files.getLastModifiedTime(source);
+		final var cached = files.get(source);
+		if (cached != null && cached.size() == size && cached.modified().equals(modified)) {
+			return cached;
+		}
+		final var file = new LocalFile(size, modified, Digests.sha256(source));
+		files.put(source, file);
+		return file;
+	}
+
+	/**
+	 * Size, modification time and checksum of a local file.
+	 *
+	 * @param size the file size in bytes
+	 * @param modified the last modification time
+	 * @param digest the SHA-256 checksum
+	 */
+	private record LocalFile(long size, FileTime modified, String digest) {
+	}
+}
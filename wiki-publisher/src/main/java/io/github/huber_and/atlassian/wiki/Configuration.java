@@ -46,9 +46,34 @@ public class Configuration {
 	/** Enable debug mode for dry-run operations without actual publishing. */
 	private boolean debug;
 
+	/**
+	 * Maximum number of pages published concurrently. A value of 1 publishes the pages one
+	 * after another.
+	 */
+	private int concurrency = 1;
+
+	/**
+	 * Number of threads parsing and transforming pages, 0 to use one thread per available
+	 * processor.
+	 */
+	private int renderThreads;
+
+	/**
+	 * Render all pages of a mapper in parallel before the first upload starts instead of
+	 * rendering them just ahead of their upload. Faster on machines with many cores, but
+	 * keeps the rendered content of the whole site in memory.
+	 */
+	private boolean preRender;
+
 	/** Set of space mappers defining how content maps to Confluence spaces. */
 	private Set<Mapper> mappers = new HashSet<>();
 
+	/** Settings of the HTTP connections to Confluence. */
+	private Connection connection = new Connection();
+
+	/** Handling of remote pages under the root page which are no longer published. */
+	private Cleanup cleanup = new Cleanup();
+
 	/**
 	 * Mapper configuration that defines how local content maps to Confluence spaces.
 	 *
@@ -68,4 +93,86 @@ public class Configuration {
 		/** The local file system path containing the content to publish. */
 		private String path;
 	}
+
+	/**
+	 * Settings of the HTTP connections shared by all requests to Confluence.
+	 *
+	 * All timeouts are given in milliseconds.
+	 */
+	@Data
+	public static class Connection {
+		/** The maximum number of pooled connections. */
+		private int maxConnections = 50;
+
+		/** The maximum number of pooled connections per route. */
+		private int maxConnectionsPerRoute = 16;
+
+		/** Timeout for establishing a connection. */
+		private int connectTimeout = 10_000;
+
+		/** Timeout waiting for data on an established connection. */
+		private int socketTimeout = 60_000;
+
+		/** Time an idle connection is kept alive if the server does not specify it. */
+		private int keepAlive = 30_000;
+
+		/** Enable compressed responses. */
+		private boolean compression = true;
+
+		/** The maximum number of retries of a throttled or transiently failed request. */
+		private int maxRetries = 5;
+
+		/** Initial delay before retrying a request, doubled with every retry. */
+		private int initialBackoff = 500;
+
+		/** Maximum delay before retrying a request. */
+		private int maxBackoff = 30_000;
+
+		/** The maximum number of requests per second, 0 to not limit the rate. */
+		private int requestsPerSecond;
+	}
+
+	/**
+	 * Settings of the cleanup of orphaned pages.
+	 *
+	 * Orphans are the pages below the root page of a mapper which are not part of the
+	 * published page tree, e.g. because they were removed from the navigation. The cleanup
+	 * only runs for mappers with a root page and only if every page of the mapper was
+	 * resolved, so a partial run never removes pages it merely failed to publish.
+	 */
+	@Data
+	public static class Cleanup {
+
+		/** What to do with orphaned pages. */
+		private Action action = Action.NONE;
+
+		/** Only report the orphans without changing them. */
+		private boolean dryRun;
+
+		/** Title of the page the orphans are moved under, required for {@link Action#MOVE}. */
+		private String target;
+
+		/**
+		 * Maximum number of pages handled at the same time. Pages are deleted or moved
+		 * concurrently in batches of this size and archived with one request per batch, at
+		 * most 300.
+		 */
+		private int batchSize = 50;
+
+		/**
+		 * The actions applicable to orphaned pages.
+		 */
+		public enum Action {
+			/** Leave orphans untouched, the default. */
+			NONE,
+			/** Only report the orphans. */
+			REPORT,
+			/** Move the orphans to the trash. */
+			DELETE,
+			/** Archive the orphans. */
+			ARCHIVE,
+			/** Move the orphans below the target page. */
+			MOVE
+		}
+	}
 }
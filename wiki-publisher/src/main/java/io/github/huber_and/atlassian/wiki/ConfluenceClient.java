@@ -15,17 +15,36 @@
  */
 package io.github.huber_and.atlassian.wiki;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.Strings;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.HttpStatus;
 
+import io.github.huber_and.atlassian.wiki.Configuration.Cleanup;
 import io.github.huber_and.atlassian.wiki.Configuration.Mapper;
+import io.github.huber_and.atlassian.wiki.PublishReport.MapperReport;
+import io.github.huber_and.atlassian.wiki.PublishReport.Outcome;
 import io.github.huber_and.atlassian.wiki.parser.Parser;
 import io.github.huber_and.atlassian.wiki.transformer.Transformer;
 
@@ -33,16 +52,28 @@ import lombok.extern.slf4j.Slf4j;
 import net.atlassian.wiki.rest.ApiClient;
 import net.atlassian.wiki.rest.ApiException;
 import net.atlassian.wiki.rest.ServerConfiguration;
+import net.atlassian.wiki.rest.StreamingApiClient;
+import net.atlassian.wiki.rest.v1.api.ContentApi;
 import net.atlassian.wiki.rest.v1.api.ContentAttachmentsApi;
+import net.atlassian.wiki.rest.v2.api.AttachmentApi;
+import net.atlassian.wiki.rest.v2.api.ChildrenApi;
 import net.atlassian.wiki.rest.v2.api.ContentPropertiesApi;
+import net.atlassian.wiki.rest.v2.api.DescendantsApi;
 import net.atlassian.wiki.rest.v2.api.PageApi;
 import net.atlassian.wiki.rest.v2.api.SpaceApi;
+import net.atlassian.wiki.rest.v2.model.ContentProperty;
 import net.atlassian.wiki.rest.v2.model.ContentPropertyCreateRequest;
+import net.atlassian.wiki.rest.v2.model.ContentPropertyUpdateRequest;
+import net.atlassian.wiki.rest.v2.model.ContentPropertyUpdateRequestVersion;
+import net.atlassian.wiki.rest.v2.model.CreatePage200Response;
 import net.atlassian.wiki.rest.v2.model.CreatePageRequest;
 import net.atlassian.wiki.rest.v2.model.CreatePageRequestBody;
 import net.atlassian.wiki.rest.v2.model.PageBulk;
 import net.atlassian.wiki.rest.v2.model.UpdatePageRequest;
 import net.atlassian.wiki.rest.v2.model.UpdatePageRequestVersion;
+import net.atlassian.wiki.rest.v2.model.Version;
+import net.atlassian.wiki.rest.v2.projection.PageSummary;
+import net.atlassian.wiki.rest.v2.projection.PageSummaryApi;
 
 /**
  * Client for publishing content to Confluence.
@@ -54,19 +85,44 @@ import net.atlassian.wiki.rest.v2.model.UpdatePageRequestVersion;
  * @author Andreas Huber
  */
 @Slf4j
-public class ConfluenceClient {
+public class ConfluenceClient implements AutoCloseable {
+
+	/** Content property holding the digest of the last published page body. */
+	private static final String CONTENT_HASH_PROPERTY = "publisher-content-hash";
+
+	/** Content property for the appearance of the draft page. */
+	private static final String APPEARANCE_DRAFT_PROPERTY = "content-appearance-draft";
+
+	/** Content property for the appearance of the published page. */
+	private static final String APPEARANCE_PUBLISHED_PROPERTY = "content-appearance-published";
+
+	/** Value of the appearance properties. */
+	private static final String FULL_WIDTH = "full-width";
+
+	/** The content properties written by the publisher. */
+	private static final Set<String> OWN_PROPERTIES = Set.of(CONTENT_HASH_PROPERTY, APPEARANCE_DRAFT_PROPERTY,
+			APPEARANCE_PUBLISHED_PROPERTY);
 
 	/** Configuration containing Confluence credentials and settings. */
 	private final Configuration config;
 
+	/** Schedules all API calls within the rate limits of the server. */
+	private final RequestScheduler scheduler;
+
+	/** HTTP client with the connection pool shared by the v1 and v2 clients. */
+	private final CloseableHttpClient httpClient;
+
 	/** REST API client for Confluence v1 endpoints. */
 	private final ApiClient clientV1;
 
 	/** REST API client for Confluence v2 endpoints. */
 	private final ApiClient clientV2;
 
-	/** API for managing content attachments. */
-	private final ContentAttachmentsApi attachmentsApi;
+	/** Synchronizes the attachments of the pages. */
+	private final AttachmentSync attachmentSync;
+
+	/** Handles the pages below the root page which are no longer published. */
+	private final OrphanCleanup orphanCleanup;
 
 	/** API for managing content properties. */
 	private final ContentPropertiesApi propertiesApi;
@@ -77,11 +133,23 @@ public class ConfluenceClient {
 	/** API for managing Confluence pages. */
 	private final PageApi pageApi;
 
-	/** Parser for extracting page content from source files. */
-	private final Parser parser;
+	/** API for listing pages as projections decoded from the response stream. */
+	private final PageSummaryApi summaryApi;
+
+	/** API for listing the children of a page. */
+	private final ChildrenApi childrenApi;
+
+	/** Limits the number of pages published concurrently across all mappers. */
+	private final Semaphore permits;
+
+	/** Rendered pages shared by all mappers of a run. */
+	private final RenderCache renderCache;
 
-	/** Transformer for converting content to Confluence storage format. */
-	private final Transformer transformer;
+	/** CPU workers parsing and transforming pages ahead of their upload. */
+	private final ForkJoinPool workers;
+
+	/** Receives the timings and the outcome of every page. */
+	private final PublishListener listener;
 
 	/**
 	 * Constructs a ConfluenceClient with the given configuration and converters.
@@ -91,105 +159,618 @@ public class ConfluenceClient {
 	 * @param transformer the content transformer
 	 */
 	public ConfluenceClient(final Configuration config, final Parser parser, final Transformer transformer) {
+		this(config, parser, transformer, PublishListener.NONE);
+	}
+
+	/**
+	 * Constructs a ConfluenceClient reporting its progress to the given listener.
+	 *
+	 * @param config the Confluence configuration
+	 * @param parser the content parser
+	 * @param transformer the content transformer
+	 * @param listener the listener receiving the timings and page outcomes
+	 */
+	public ConfluenceClient(final Configuration config, final Parser parser, final Transformer transformer,
+			final PublishListener listener) {
 		this.config = config;
-		this.parser = parser;
-		this.transformer = transformer;
-		clientV1 = new ApiClient();
+		this.listener = listener;
+		renderCache = new RenderCache(parser, transformer, listener);
+		permits = new Semaphore(Math.max(1, config.getConcurrency()));
+		workers = new ForkJoinPool(config.getRenderThreads() > 0 ? config.getRenderThreads()
+				: Runtime.getRuntime().availableProcessors());
+		scheduler = new RequestScheduler(config.getConnection(), listener);
+		httpClient = HttpClientFactory.create(config.getConnection(), scheduler::observe);
+		clientV1 = new StreamingApiClient(httpClient);
 		clientV1.setUsername(config.getUsername());
 		clientV1.setPassword(config.getPassword());
 		final var serverV1 = new ServerConfiguration(config.getUrl() + "/rest/api", null, Collections.emptyMap());
 		clientV1.setServers(Collections.singletonList(serverV1));
 		clientV1.setServerIndex(0);
 
-		clientV2 = new ApiClient();
+		clientV2 = new StreamingApiClient(httpClient);
 		clientV2.setUsername(config.getUsername());
 		clientV2.setPassword(config.getPassword());
 		final var serverV2 = new ServerConfiguration(config.getUrl() + "/api/v2", null, Collections.emptyMap());
 		clientV2.setServers(Collections.singletonList(serverV2));
 		clientV2.setServerIndex(0);
-		attachmentsApi = new ContentAttachmentsApi(clientV1);
+		attachmentSync = new AttachmentSync(new ContentAttachmentsApi(clientV1), new AttachmentApi(clientV2),
+				scheduler, listener);
 		propertiesApi = new ContentPropertiesApi(clientV2);
 		spaceApi = new SpaceApi(clientV2);
 		pageApi = new PageApi(clientV2);
+		summaryApi = new PageSummaryApi(clientV2);
+		childrenApi = new ChildrenApi(clientV2);
+		orphanCleanup = new OrphanCleanup(config.getCleanup(), pageApi, new DescendantsApi(clientV2),
+				new ContentApi(clientV1), scheduler);
 	}
 
 	/**
 	 * Updates or creates the given list of pages in the specified Confluence space.
 	 *
-	 * If a root page is configured, all pages are created under it. Otherwise, they are
-	 * created at the space root level. Each page and its children are recursively processed.
+	 * If a root page is configured, all pages are created under it and existing pages are
+	 * looked up among the children of their parent, level by level, instead of listing the
+	 * whole space. Otherwise, they are created at the space root level. Each page and its
+	 * children are recursively processed.
+	 * Siblings are published concurrently, limited by the configured concurrency which is
+	 * shared by all mappers published at the same time. The pages are parsed and transformed
+	 * ahead of their upload by a {@link PagePipeline}. If pre-rendering is enabled, all pages
+	 * are rendered in parallel before the first upload starts. A page which fails is counted in the
+	 * report and does not stop the other pages.
 	 *
 	 * @param mapper the space mapper defining the target space and configuration
-	 * @param pages the list of pages to update or create
-	 * @throws Exception if an error occurs during the update operation
+	 * @param tree the tree of pages to update or create
+	 * @param report the report receiving the outcome of each page
+	 * @throws Exception if the space could not be resolved or the run was interrupted
+	 */
+	public void updatePages(final Mapper mapper, final PageTree tree, final MapperReport report)
+			throws Exception {
+		updatePages(openSession(mapper), tree, report);
+	}
+
+	/**
+	 * Resolves the space of a mapper and loads its publish state. The session can be reused
+	 * by several runs of the same mapper, which then share the index of the remote pages and
+	 * the publish state held in memory.
+	 *
+	 * @param mapper the space mapper
+	 * @return the session of the mapper
+	 * @throws ApiException if the space could not be resolved
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
 	 */
-	public void updatePages(final Mapper mapper, final List<Page> pages) throws Exception {
+	public Session openSession(final Mapper mapper) throws ApiException, InterruptedException {
 		var spaceId = mapper.getSpaceKey();
-		List<PageBulk> list = Collections.emptyList();
+		var list = new RemotePages();
+		var state = new PublishState(null);
 		if (!config.isDebug()) {
-			final var space = spaceApi
-					.getSpaces(null, List.of(spaceId), null, null, null, null, null, null, null, null, null, null)
+			final var key = spaceId;
+			final var space = scheduler.execute("getSpaces", true, () -> spaceApi
+					.getSpaces(null, List.of(key), null, null, null, null, null, null, null, null, null, null))
 					.getResults().getFirst();
 			spaceId = space.getId();
-			list = pageApi.getPagesInSpace(Long.parseLong(space.getId()), "all", null, List.of("current"), null, null,
-					null, null).getResults().stream().toList();
+			final var id = Long.parseLong(space.getId());
+			if (StringUtils.isNotBlank(mapper.getRoot())) {
+				list = new RemotePages(title -> findPage(id, title), this::loadChildren);
+			} else {
+				list = new RemotePages(index -> loadPages(id, index));
+			}
+			state = PublishState.load(PublishState.fileOf(mapper));
+		}
+		return new Session(mapper, spaceId, list, state);
+	}
+
+	/**
+	 * Updates or creates all pages of a tree within an open session.
+	 *
+	 * @param session the session of the mapper
+	 * @param tree the tree of pages to update or create
+	 * @param report the report receiving the outcome of each page
+	 * @throws Exception if the run was interrupted
+	 * @see #updatePages(Mapper, PageTree, MapperReport)
+	 */
+	public void updatePages(final Session session, final PageTree tree, final MapperReport report)
+			throws Exception {
+		final var mapper = session.mapper();
+		final var pages = tree.getRoots();
+		final var state = session.state();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+				var pipeline = new PagePipeline(renderCache, workers, capacity())) {
+			final var context = new Context(session, executor, pipeline, report, true);
+			final var root = StringUtils.isNotBlank(mapper.getRoot())
+					? new Page(mapper.getRoot(), Path.of(mapper.getPath(), "index.html"), null)
+					: null;
+			final List<Page> all = new ArrayList<>();
+			if (root != null) {
+				all.add(root);
+			}
+			all.addAll(pages);
+			if (config.isPreRender()) {
+				renderCache.preRender(all, workers);
+			}
+			pipeline.start(all);
+			String parentId = null;
+			if (root != null) {
+				final var remote = createOrUpdatePage(root, null, context);
+				if (remote == null) {
+					pipeline.discard(pages);
+					fail(pages, context);
+					return;
+				}
+				parentId = remote.getId();
+			}
+			createOrUpdatePages(pages, parentId, context);
+			if (parentId != null && config.getCleanup().getAction() != Cleanup.Action.NONE && !config.isDebug()) {
+				cleanup(parentId, context);
+			}
+		} finally {
+			saveState(state);
+		}
+	}
+
+	/**
+	 * Updates the given pages of a tree published before within the same session, without
+	 * their children.
+	 *
+	 * The pages are published concurrently below the remote pages their parents are known as
+	 * in the publish state. Nothing is published if the parent of a page is not known, e.g.
+	 * because it was added to the navigation since, so the caller can publish the whole tree
+	 * instead.
+	 *
+	 * @param session the session of the mapper
+	 * @param pages the pages to update
+	 * @param report the report receiving the outcome of each page
+	 * @return false if nothing was published because the parent of a page is not known
+	 * @throws Exception if the run was interrupted
+	 */
+	public boolean updatePages(final Session session, final Collection<Page> pages, final MapperReport report)
+			throws Exception {
+		final var root = StringUtils.trimToNull(session.mapper().getRoot());
+		final Map<Page, String> parents = new LinkedHashMap<>();
+		for (final Page page : pages) {
+			final var parent = page.getParent() != null ? page.getParent().getTitle() : root;
+			final var parentId = parent == null ? null
+					: session.state().get(parent).map(PublishState.Entry::getId).orElse(null);
+			if (parent != null && parentId == null) {
+				log.info("Parent {} of page {} is not published yet", parent, page.getTitle());
+				return false;
+			}
+			parents.put(page, parentId);
+		}
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+				var pipeline = new PagePipeline(renderCache, workers, capacity())) {
+			final var context = new Context(session, executor, pipeline, report, false);
+			pipeline.start(parents.keySet(), false);
+			final List<Future<PageBulk>> futures = new ArrayList<>();
+			parents.forEach((page, parentId) -> futures
+					.add(executor.submit(() -> createOrUpdatePage(page, parentId, context))));
+			await(futures);
+		} finally {
+			saveState(session.state());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of pages prepared ahead of their upload.
+	 */
+	private int capacity() {
+		return 2 * (Math.max(1, config.getConcurrency()) + workers.getParallelism());
+	}
+
+	/**
+	 * Handles the orphaned pages below the root page, unless a page of the run failed or
+	 * another mapper publishes below the same root page.
+	 *
+	 * The pages published by a run are known for its own mapper only, so the pages of
+	 * another mapper sharing the root page would be orphans.
+	 *
+	 * @param rootId the ID of the root page
+	 * @param context the state of the current publishing run
+	 * @throws ApiException if the orphans could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private void cleanup(final String rootId, final Context context) throws ApiException, InterruptedException {
+		if (context.report().getFailed() > 0) {
+			log.warn("Skip cleanup of orphaned pages, {} pages failed", context.report().getFailed());
+			return;
+		}
+		final var mapper = context.session().mapper();
+		final var shared = config.getMappers().stream()
+				.filter(m -> !m.equals(mapper) && Objects.equals(m.getSpaceKey(), mapper.getSpaceKey())
+						&& Objects.equals(StringUtils.trim(m.getRoot()), StringUtils.trim(mapper.getRoot())))
+				.findAny();
+		if (shared.isPresent()) {
+			log.warn("Skip cleanup of orphaned pages, mapper of {} publishes below root page {} as well",
+					shared.get().getPath(), mapper.getRoot());
+			return;
+		}
+		String targetId = null;
+		if (StringUtils.isNotBlank(config.getCleanup().getTarget())) {
+			targetId = context.pages().findByTitle(config.getCleanup().getTarget()).map(PageBulk::getId).orElse(null);
+		}
+		orphanCleanup.reconcile(rootId, context.published(), targetId, context.state(), context.report());
+	}
+
+	private void saveState(final PublishState state) {
+		try {
+			state.save();
+		} catch (final IOException e) {
+			log.warn("Failed to write publish state {}", state.getFile(), e);
+		}
+	}
+
+	private void record(final Page page, final Outcome outcome, final Context context) {
+		context.report().add(outcome);
+		listener.published(page, outcome);
+	}
+
+	private void fail(final List<Page> pages, final Context context) {
+		for (final Page page : pages) {
+			record(page, Outcome.FAILED, context);
+			fail(page.getChildren(), context);
+		}
+	}
+
+	/**
+	 * Loads all current pages of the space into the index.
+	 *
+	 * Follows the pagination cursor until the whole space is read. Each set of results is
+	 * added to the index as soon as it is received.
+	 *
+	 * @param spaceId the ID of the space
+	 * @param index the index to fill
+	 * @throws ApiException if the pages could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private void loadPages(final long spaceId, final RemotePages index) throws ApiException, InterruptedException {
+		String cursor = null;
+		do {
+			final var next = cursor;
+			final var response = scheduler.execute("getPagesInSpace", true, () -> summaryApi.getPagesInSpace(spaceId,
+					"all", List.of("current"), null, next, Pagination.LIMIT));
+			response.results().forEach(p -> index.add(toPage(p)));
+			cursor = Pagination.nextCursor(response.links());
+		} while (cursor != null);
+		log.info("Found {} pages in space {}", index.size(), spaceId);
+	}
+
+	/**
+	 * Finds the current page with the given title in a space with a single request.
+	 *
+	 * @param spaceId the ID of the space
+	 * @param title the page title
+	 * @return the page, or empty if the space has no current page with this title
+	 * @throws ApiException if the page could not be looked up
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private Optional<PageBulk> findPage(final long spaceId, final String title)
+			throws ApiException, InterruptedException {
+		final var response = scheduler.execute("getPages", true, () -> summaryApi.getPages(null, List.of(spaceId),
+				List.of("current"), title, null, 1));
+		return response.results().stream().filter(p -> title.equals(p.title())).findFirst()
+				.map(ConfluenceClient::toPage);
+	}
+
+	/**
+	 * Loads the current children of a page.
+	 *
+	 * The listing of the direct children includes other content types like folders and
+	 * returns neither the parent nor the version of the pages, so the listed pages are read
+	 * in batches by their IDs afterwards.
+	 *
+	 * @param parentId the ID of the parent page
+	 * @return the child pages
+	 * @throws ApiException if the children could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private List<PageBulk> loadChildren(final String parentId) throws ApiException, InterruptedException {
+		final var id = Long.parseLong(parentId);
+		final List<Long> ids = new ArrayList<>();
+		String cursor = null;
+		do {
+			final var next = cursor;
+			final var response = scheduler.execute("getPageDirectChildren", true,
+					() -> childrenApi.getPageDirectChildren(id, next, Pagination.LIMIT, null));
+			response.getResults().stream().filter(c -> "page".equals(c.getType()))
+					.forEach(c -> ids.add(Long.parseLong(c.getId())));
+			cursor = Pagination.nextCursor(response.getLinks());
+		} while (cursor != null);
+		final List<PageBulk> children = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += Pagination.LIMIT) {
+			final var batch = ids.subList(i, Math.min(i + Pagination.LIMIT, ids.size()));
+			final var response = scheduler.execute("getPages", true, () -> summaryApi.getPages(batch, null,
+					List.of("current"), null, null, Pagination.LIMIT));
+			response.results().forEach(p -> children.add(toPage(p)));
 		}
-		PageBulk root = null;
-		if (StringUtils.isNotBlank(mapper.getRoot())) {
-			root = createOrUpdatePage(new Page(mapper.getRoot(), Path.of(mapper.getPath(), "index.html"), null), null,
-					spaceId, list);
+		log.debug("Found {} children of page {}", children.size(), parentId);
+		return children;
+	}
+
+	/**
+	 * Converts a listed page into the page model used by the index of the remote pages.
+	 *
+	 * @param summary the listed page
+	 * @return the page with its ID, title, space, parent and version
+	 */
+	private static PageBulk toPage(final PageSummary summary) {
+		return new PageBulk().id(summary.id()).title(summary.title()).spaceId(summary.spaceId())
+				.parentId(summary.parentId())
+				.version(summary.version() == null ? null : new Version().number(summary.version()));
+	}
+
+	/**
+	 * Creates or updates the given sibling pages and waits until all of them including their
+	 * children are published.
+	 *
+	 * Confluence appends a created page to the children of its parent, so the siblings are
+	 * resolved one after another in navigation order, each waiting for the previous one to
+	 * be found or created. Their bodies, attachments and children are published
+	 * concurrently. With a concurrency of one, the pages are published strictly in
+	 * navigation order, each page before its children.
+	 *
+	 * @param pages the sibling pages
+	 * @param parentId the parent page ID, or null if at root level
+	 * @param context the state of the current publishing run
+	 * @throws Exception the first error raised while publishing one of the pages
+	 */
+	private void createOrUpdatePages(final List<Page> pages, final String parentId, final Context context)
+			throws Exception {
+		if (config.getConcurrency() <= 1) {
+			Exception error = null;
+			for (final Page page : pages) {
+				try {
+					createOrUpdatePage(page, parentId, null, null, context);
+				} catch (final InterruptedException e) {
+					throw e;
+				} catch (final Exception e) {
+					if (error == null) {
+						error = e;
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+			return;
 		}
+		final List<Future<PageBulk>> futures = new ArrayList<>();
+		CompletableFuture<Void> previous = null;
 		for (final Page page : pages) {
-			createOrUpdatePage(page, root != null ? root.getId() : null, spaceId, list);
+			final var after = previous;
+			final var turn = new CompletableFuture<Void>();
+			futures.add(context.executor().submit(() -> createOrUpdatePage(page, parentId, after, turn, context)));
+			previous = turn;
+		}
+		await(futures);
+	}
+
+	/**
+	 * Waits until all pages are published.
+	 *
+	 * @param futures the tasks publishing the pages
+	 * @throws Exception the first error raised while publishing one of the pages
+	 */
+	private static void await(final List<Future<PageBulk>> futures) throws Exception {
+		Exception error = null;
+		for (final Future<PageBulk> future : futures) {
+			try {
+				future.get();
+			} catch (final ExecutionException e) {
+				if (error == null) {
+					error = e.getCause() instanceof final Exception cause ? cause : e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
 		}
 	}
 
 	/**
 	 * Creates or updates a page in Confluence with its content and attachments.
 	 *
+	 * The content is taken from the pipeline before a concurrency permit is acquired, so
+	 * waiting for the CPU stage never blocks an upload. Neither does waiting for the previous
+	 * sibling to be resolved. The page itself is published while
+	 * holding one of the permits. The permit is released before the children are published,
+	 * so waiting parents never block them. The outcome is added to the report. If the page
+	 * can not be resolved, it is counted as failed together with its children. If only the
+	 * content or attachments fail, the children are still published.
+	 *
 	 * @param page the page to create or update
 	 * @param parentId the parent page ID, or null if at root level
-	 * @param spaceId the target space ID
-	 * @param list existing pages in the space for lookup
-	 * @return the created or updated page
-	 * @throws Exception if an error occurs during the operation
-	 */
-	protected PageBulk createOrUpdatePage(final Page page, final String parentId, final String spaceId,
-			final List<PageBulk> list) throws Exception {
-		log.info("Create or update page {} ", page.getTitle());
-		final var remote = getOrCreatePage(page, parentId, spaceId, list);
-		if (page.getSource() != null) {
-			final var content = parser.loadContent(page);
-			final var result = transformer.transform(page, content);
-			updateBody(page, remote, result.getContent());
-			result.getAttachments().forEach(a -> createOrUpdateAttachment(remote.getId(), a));
-		}
-		for (final Page child : page.getChildren()) {
-			createOrUpdatePage(child, remote.getId(), spaceId, list);
+	 * @param context the state of the current publishing run
+	 * @return the created or updated page, or null if it could not be resolved
+	 * @throws Exception if the run was interrupted
+	 */
+	protected PageBulk createOrUpdatePage(final Page page, final String parentId, final Context context)
+			throws Exception {
+		return createOrUpdatePage(page, parentId, null, null, context);
+	}
+
+	/**
+	 * Creates or updates a page once the previous sibling is resolved.
+	 *
+	 * @param page the page to create or update
+	 * @param parentId the parent page ID, or null if at root level
+	 * @param previous completed once the previous sibling is resolved, or null
+	 * @param turn completed once this page is resolved, or null
+	 * @param context the state of the current publishing run
+	 * @return the created or updated page, or null if it could not be resolved
+	 * @throws Exception if the run was interrupted
+	 * @see #createOrUpdatePage(Page, String, Context)
+	 */
+	private PageBulk createOrUpdatePage(final Page page, final String parentId, final Future<Void> previous,
+			final CompletableFuture<Void> turn, final Context context) throws Exception {
+		try {
+			return publishPage(page, parentId, previous, turn, context);
+		} finally {
+			// the next sibling must not wait for a page which failed before it was resolved
+			if (turn != null) {
+				turn.complete(null);
+			}
+		}
+	}
+
+	private PageBulk publishPage(final Page page, final String parentId, final Future<Void> previous,
+			final CompletableFuture<Void> turn, final Context context) throws Exception {
+		Transformer.Result result = null;
+		Exception failure = null;
+		try {
+			result = context.pipeline().take(page);
+		} catch (final InterruptedException e) {
+			throw e;
+		} catch (final Exception e) {
+			failure = e;
+		}
+		PageBulk remote = null;
+		if (previous != null) {
+			previous.get();
+		}
+		permits.acquire();
+		try {
+			log.info("Create or update page {} ", page.getTitle());
+			Resolved resolved = null;
+			try {
+				resolved = getOrCreatePage(page, parentId, result, context);
+			} catch (final InterruptedException e) {
+				throw e;
+			} catch (final Exception e) {
+				log.error("Failed to resolve page {}", page.getTitle(), e);
+				if (context.descend()) {
+					fail(List.of(page), context);
+				} else {
+					record(page, Outcome.FAILED, context);
+				}
+			} finally {
+				if (turn != null) {
+					turn.complete(null);
+				}
+			}
+			if (resolved != null) {
+				remote = resolved.page();
+				var outcome = resolved.created() ? Outcome.CREATED : Outcome.SKIPPED;
+				if (failure != null) {
+					log.error("Failed to prepare content of page {}", page.getTitle(), failure);
+					outcome = Outcome.FAILED;
+				} else if (result != null) {
+					try {
+						var updated = false;
+						if (!resolved.created()) {
+							try {
+								updated = updateBody(page, remote, result, context);
+							} catch (final ApiException e) {
+								if (e.getCode() != HttpStatus.SC_NOT_FOUND) {
+									throw e;
+								}
+								log.info("Page {} with id {} no longer exists, resolve it from the space",
+										page.getTitle(), remote.getId());
+								context.state().remove(page.getTitle());
+								resolved = getOrCreatePage(page, parentId, result, context);
+								remote = resolved.page();
+								updated = !resolved.created() && updateBody(page, remote, result, context);
+							}
+						}
+						if (!config.isDebug()) {
+							attachmentSync.sync(remote.getId(), result.getAttachments(),
+									context.state().getOrCreate(page.getTitle()));
+						}
+						if (updated && !resolved.created()) {
+							outcome = Outcome.UPDATED;
+						}
+					} catch (final InterruptedException e) {
+						throw e;
+					} catch (final Exception e) {
+						// the page exists, so its children are still published
+						log.error("Failed to publish content of page {}", page.getTitle(), e);
+						outcome = Outcome.FAILED;
+					}
+				}
+				record(page, outcome, context);
+			}
+		} finally {
+			permits.release();
+		}
+		if (remote == null) {
+			if (context.descend()) {
+				context.pipeline().discard(page.getChildren());
+			}
+			return null;
+		}
+		context.published().add(remote.getId());
+		if (context.descend()) {
+			createOrUpdatePages(page.getChildren(), remote.getId(), context);
 		}
 		return remote;
 
 	}
 
-	private PageBulk getOrCreatePage(final Page page, final String parentId, final String spaceId,
-			final List<PageBulk> list) throws Exception {
+	/**
+	 * Resolves the remote page for the given page, creating it if it does not exist.
+	 *
+	 * Pages known from the publish state are resolved without any remote call. Otherwise
+	 * the page is looked up by its title in the space. A missing page is created with its
+	 * final body in a single request and recorded in the publish state, so its body is not
+	 * written again. Pages without content are created with their title as body.
+	 *
+	 * @param page the local page
+	 * @param parentId the parent page ID, or null if at root level
+	 * @param content the transformed content of the page, or null if there is none
+	 * @param context the state of the current publishing run
+	 * @return the remote page and whether it was created
+	 * @throws Exception if the page could not be resolved or created
+	 */
+	private Resolved getOrCreatePage(final Page page, final String parentId, final Transformer.Result content,
+			final Context context) throws Exception {
 		final var title = page.getTitle();
-		final var result = list.stream().filter(r -> Strings.CS.equals(page.getTitle(), r.getTitle())).findFirst();
+		final var spaceId = context.spaceId();
+		final var list = context.pages();
+		final var known = context.state().get(title).filter(e -> e.getId() != null);
+		if (known.isPresent()) {
+			log.info("Page {} with id {} known from publish state", title, known.get().getId());
+			return new Resolved(new PageBulk().id(known.get().getId()).title(title).spaceId(spaceId)
+					.version(new Version().number(known.get().getVersion())), false);
+		}
+		final var result = list.find(parentId, title);
 
 		PageBulk remote = null;
 		if (result.isPresent()) {
 			remote = result.get();
 			log.info("Root Page {} with id {} found", title, remote.getId());
+			return new Resolved(remote, false);
 		} else {
 			String pageId;
 			if (!config.isDebug()) {
-				final var response = pageApi.createPage(CreatePageRequest.builder().parentId(parentId).spaceId(spaceId)
-						.title(title)
-						.body(CreatePageRequestBody.builder().value(page.getTitle())
+				final var request = CreatePageRequest.builder().parentId(parentId).spaceId(spaceId).title(title)
+						.body(CreatePageRequestBody.builder().value(content == null ? title : content.getContent())
 								.representation(CreatePageRequestBody.RepresentationEnum.STORAGE).build())
-						.build(), null, null, null);
+						.build();
+				final CreatePage200Response response;
+				try {
+					response = scheduler.execute("createPage", false, () -> pageApi.createPage(request, null, null, null));
+				} catch (final ApiException e) {
+					// the title is taken by a page outside of the looked up parent
+					final var existing = e.getCode() == HttpStatus.SC_BAD_REQUEST ? list.findByTitle(title)
+							: Optional.<PageBulk>empty();
+					if (existing.isEmpty()) {
+						throw e;
+					}
+					log.info("Page {} with id {} found elsewhere in the space", title, existing.get().getId());
+					return new Resolved(existing.get(), false);
+				}
 				remote = new PageBulk().id(response.getId()).title(response.getTitle()).spaceId(response.getSpaceId())
-						.parentId(response.getSpaceId()).version(response.getVersion());
+						.parentId(response.getParentId()).version(response.getVersion());
+				if (content != null) {
+					final var entry = context.state().getOrCreate(title);
+					entry.setId(remote.getId());
+					entry.setVersion(remote.getVersion().getNumber());
+					entry.setHash(content.digest());
+					entry.setSource(source(page, context));
+					entry.getAttachments().clear();
+					// the properties are recorded once written, a failed one is written by the next
+					// run even though the digest is already recorded, see updateBody
+					entry.getProperties().clear();
+					writeProperties(Long.parseLong(remote.getId()), entry, content.digest(), context);
+				}
 			} else {
 				pageId = UUID.randomUUID().toString();
 				remote = new PageBulk();
@@ -198,38 +779,85 @@ public class ConfluenceClient {
 				remote.setParentId(pageId);
 
 			}
+			list.add(remote);
 			log.info(" Page {} created with id {}", title, remote.getId());
 		}
-		return remote;
+		return new Resolved(remote, true);
 	}
 
-	private void updateBody(final Page page, final PageBulk remote, final String body) throws Exception {
+	/**
+	 * Updates the body of the remote page if the transformed content has changed.
+	 *
+	 * The digest of the content is kept in the publish state and stored as content property
+	 * on the page. If the digest known from the state matches the current one, the page is
+	 * skipped without any remote call, apart from writing the properties missing from the
+	 * state. Otherwise the stored property is compared, so no new version is created for
+	 * unchanged content. The content properties of the page are read only if they are not
+	 * known from the state. A version conflict caused by a stale state is reconciled by
+	 * reading the current version of the page. The content properties are written by
+	 * separate tasks of the run, so the page does not wait for them.
+	 *
+	 * @param page the local page
+	 * @param remote the remote page
+	 * @param result the transformed content of the page
+	 * @param context the state of the current publishing run
+	 * @return true if a new version of the page was written
+	 * @throws Exception if the update fails
+	 */
+	private boolean updateBody(final Page page, final PageBulk remote, final Transformer.Result result,
+			final Context context) throws Exception {
 		if (config.isDebug()) {
-			return;
+			return false;
+		}
+		final var digest = result.digest();
+		final var entry = context.state().getOrCreate(page.getTitle());
+		if (!remote.getId().equals(entry.getId())) {
+			entry.setId(remote.getId());
+			entry.setHash(null);
+			entry.getAttachments().clear();
+			entry.getProperties().clear();
+		}
+		entry.setSource(source(page, context));
+		if (Objects.equals(digest, entry.getHash())) {
+			log.info("Page {} is unchanged, skip update", page.getTitle());
+			if (!entry.getProperties().keySet().containsAll(OWN_PROPERTIES)) {
+				// a property write of an earlier run failed
+				writeProperties(Long.parseLong(remote.getId()), entry,
+						entry.getProperties().containsKey(CONTENT_HASH_PROPERTY) ? null : digest, context);
+			}
+			return false;
 		}
 		try {
-			var version = (int) remote.getVersion().getNumber();
-			version++;
-
-			final var request = UpdatePageRequest.builder().id(remote.getId()).title(remote.getTitle())
-					.status(UpdatePageRequest.StatusEnum.CURRENT)
-					.version(UpdatePageRequestVersion.builder().number(version).build())
-					.body(CreatePageRequestBody.builder()
-							.representation(CreatePageRequestBody.RepresentationEnum.STORAGE).value(body).build())
-					.build();
-			pageApi.updatePage(Long.parseLong(remote.getId()), request);
-			final var properties = propertiesApi.getPageContentProperties(Long.parseLong(remote.getId()), null, null,
-					null, null);
-			final Map<String, Object> list = new HashMap<>();
-			properties.getResults().forEach(p -> list.put(p.getKey(), p));
-			if (!list.containsKey("content-appearance-draft")) {
-				propertiesApi.createPageProperty(Long.parseLong(remote.getId()), ContentPropertyCreateRequest.builder()
-						.key("content-appearance-draft").value("full-width").build());
-			}
-			if (!list.containsKey("content-appearance-published")) {
-				propertiesApi.createPageProperty(Long.parseLong(remote.getId()), ContentPropertyCreateRequest.builder()
-						.key("content-appearance-published").value("full-width").build());
+			final var pageId = Long.parseLong(remote.getId());
+			if (!entry.getProperties().containsKey(CONTENT_HASH_PROPERTY)) {
+				final var stored = loadProperties(pageId, entry);
+				if (Objects.equals(digest, stored)) {
+					log.info("Page {} is unchanged, skip update", page.getTitle());
+					entry.setVersion(remote.getVersion().getNumber());
+					entry.setHash(digest);
+					writeProperties(pageId, entry, null, context);
+					return false;
+				}
+			}
+			CreatePage200Response response;
+			try {
+				final var request = updateRequest(remote, remote.getVersion().getNumber() + 1, result.getContent());
+				response = scheduler.execute("updatePage", true, () -> pageApi.updatePage(pageId, request));
+			} catch (final ApiException e) {
+				if (e.getCode() != HttpStatus.SC_CONFLICT) {
+					throw e;
+				}
+				final var current = scheduler.execute("getPageById", true, () -> pageApi.getPageById(pageId, null,
+						null, null, null, null, null, null, null, null, null, null, null, null, null));
+				log.info("Version conflict on page {}, remote version is {}", page.getTitle(),
+						current.getVersion().getNumber());
+				final var request = updateRequest(remote, current.getVersion().getNumber() + 1, result.getContent());
+				response = scheduler.execute("updatePage", true, () -> pageApi.updatePage(pageId, request));
 			}
+			entry.setVersion(response.getVersion().getNumber());
+			entry.setHash(digest);
+			writeProperties(pageId, entry, digest, context);
+			return true;
 		} catch (final Exception e) {
 			log.warn("Failed to update page body for {}", page.getTitle(), e);
 			throw e;
@@ -237,16 +865,201 @@ public class ConfluenceClient {
 
 	}
 
-	private void createOrUpdateAttachment(final String contentId, final Attachment attachment) {
-		if (config.isDebug()) {
-			return;
+	private static String source(final Page page, final Context context) {
+		return context.contentPath().relativize(page.getSource().toAbsolutePath()).toString();
+	}
+
+	private UpdatePageRequest updateRequest(final PageBulk remote, final int version, final String body) {
+		return UpdatePageRequest.builder().id(remote.getId()).title(remote.getTitle())
+				.status(UpdatePageRequest.StatusEnum.CURRENT)
+				.version(UpdatePageRequestVersion.builder().number(version).build())
+				.body(CreatePageRequestBody.builder().representation(CreatePageRequestBody.RepresentationEnum.STORAGE)
+						.value(body).build())
+				.build();
+	}
+
+	/**
+	 * Reads the content properties of a page and records the ones written by the publisher
+	 * in its state entry.
+	 *
+	 * @param pageId the id of the page
+	 * @param entry the publish state of the page
+	 * @return the stored digest of the page body, or null if there is none
+	 * @throws ApiException if the properties could not be read
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private Object loadProperties(final long pageId, final PublishState.Entry entry)
+			throws ApiException, InterruptedException {
+		final Map<String, PublishState.Property> properties = new HashMap<>();
+		Object digest = null;
+		for (final ContentProperty property : scheduler.execute("getPageContentProperties", true,
+				() -> propertiesApi.getPageContentProperties(pageId, null, null, null, Pagination.LIMIT))
+				.getResults()) {
+			if (OWN_PROPERTIES.contains(property.getKey())) {
+				properties.put(property.getKey(), new PublishState.Property(property.getId(), version(property)));
+			}
+			if (CONTENT_HASH_PROPERTY.equals(property.getKey())) {
+				digest = property.getValue();
+			}
 		}
+		entry.getProperties().keySet().retainAll(properties.keySet());
+		entry.getProperties().putAll(properties);
+		return digest;
+	}
+
+	/**
+	 * Writes the digest of the page body and the missing appearance properties of a page.
+	 *
+	 * Every property is written by its own task of the run, which is awaited before the run
+	 * completes. A property is recorded in the state entry only once it is written, so a
+	 * property which fails is logged and written again by the next run, even if the page
+	 * is unchanged.
+	 *
+	 * @param pageId the id of the page
+	 * @param entry the publish state of the page
+	 * @param digest the digest of the page body, or null to keep the stored one
+	 * @param context the state of the current publishing run
+	 */
+	private void writeProperties(final long pageId, final PublishState.Entry entry, final String digest,
+			final Context context) {
+		final Map<String, Object> values = new LinkedHashMap<>();
+		if (digest != null) {
+			values.put(CONTENT_HASH_PROPERTY, digest);
+		}
+		for (final String key : List.of(APPEARANCE_DRAFT_PROPERTY, APPEARANCE_PUBLISHED_PROPERTY)) {
+			if (!entry.getProperties().containsKey(key)) {
+				values.put(key, FULL_WIDTH);
+			}
+		}
+		values.forEach((key, value) -> context.executor().submit(() -> {
+			try {
+				writeProperty(pageId, entry, key, value, true);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final Exception e) {
+				log.warn("Failed to write content property {} of page {}", key, pageId, e);
+			}
+		}));
+	}
+
+	/**
+	 * Creates the content property or updates it if it is known to exist.
+	 *
+	 * If the known property is outdated or an unknown one already exists, the properties of
+	 * the page are read again and the write is retried once.
+	 *
+	 * @param pageId the id of the page
+	 * @param entry the publish state of the page
+	 * @param key the property key
+	 * @param value the new property value
+	 * @param retry whether to retry with the current properties of the page
+	 * @throws ApiException if the property could not be written
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private void writeProperty(final long pageId, final PublishState.Entry entry, final String key,
+			final Object value, final boolean retry) throws ApiException, InterruptedException {
+		final var known = entry.getProperties().get(key);
 		try {
-			attachmentsApi.createOrUpdateAttachments(contentId, attachment.getSource().toFile(), "binary", "current",
-					null);
+			final ContentProperty written;
+			if (known == null) {
+				final var request = ContentPropertyCreateRequest.builder().key(key).value(value).build();
+				written = scheduler.execute("createPageProperty", false,
+						() -> propertiesApi.createPageProperty(pageId, request));
+			} else {
+				final var request = ContentPropertyUpdateRequest.builder().key(key).value(value)
+						.version(ContentPropertyUpdateRequestVersion.builder().number(known.getVersion() + 1).build())
+						.build();
+				written = scheduler.execute("updatePageProperty", true,
+						() -> propertiesApi.updatePagePropertyById(pageId, Long.parseLong(known.getId()), request));
+			}
+			entry.getProperties().put(key, new PublishState.Property(written.getId(), version(written)));
 		} catch (final ApiException e) {
-			log.error("Failed to upload attachment {} to {}", attachment.getFileName(), contentId, e);
+			if (!retry || e.getCode() != HttpStatus.SC_CONFLICT && e.getCode() != HttpStatus.SC_NOT_FOUND
+					&& e.getCode() != HttpStatus.SC_BAD_REQUEST) {
+				throw e;
+			}
+			log.info("Content property {} of page {} is out of date, read it again", key, pageId);
+			loadProperties(pageId, entry);
+			writeProperty(pageId, entry, key, value, false);
 		}
 	}
 
+	private static int version(final ContentProperty property) {
+		return property.getVersion() == null || property.getVersion().getNumber() == null ? 1
+				: property.getVersion().getNumber();
+	}
+
+	/**
+	 * Releases the pages rendered for the mappers of the last run.
+	 */
+	public void clearRenderCache() {
+		renderCache.clear();
+	}
+
+	/**
+	 * Stops the workers and closes the pooled connections to Confluence.
+	 *
+	 * @throws IOException if the connections could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		workers.shutdownNow();
+		httpClient.close();
+	}
+
+	/**
+	 * The remote state of a mapper, which can be kept between runs.
+	 *
+	 * @param mapper the space mapper
+	 * @param spaceId the target space ID
+	 * @param pages existing pages in the space for lookup
+	 * @param state the publish state of the space
+	 */
+	public record Session(Mapper mapper, String spaceId, RemotePages pages, PublishState state) {
+	}
+
+	/**
+	 * State shared by all pages of a single publishing run.
+	 *
+	 * @param session the session of the mapper
+	 * @param executor the executor running the page tasks
+	 * @param pipeline the pipeline preparing the content of the pages
+	 * @param report the report receiving the outcome of each page
+	 * @param descend whether the children of the pages are published as well
+	 * @param published the IDs of the remote pages resolved by the run
+	 */
+	protected record Context(Session session, ExecutorService executor, PagePipeline pipeline, MapperReport report,
+			boolean descend, Set<String> published) {
+
+		Context(final Session session, final ExecutorService executor, final PagePipeline pipeline,
+				final MapperReport report, final boolean descend) {
+			this(session, executor, pipeline, report, descend, ConcurrentHashMap.newKeySet());
+		}
+
+		String spaceId() {
+			return session.spaceId();
+		}
+
+		RemotePages pages() {
+			return session.pages();
+		}
+
+		PublishState state() {
+			return session.state();
+		}
+
+		Path contentPath() {
+			return Path.of(session.mapper().getPath()).toAbsolutePath();
+		}
+	}
+
+	/**
+	 * A resolved remote page.
+	 *
+	 * @param page the remote page
+	 * @param created true if the page was created by this run
+	 */
+	private record Resolved(PageBulk page, boolean created) {
+	}
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Helper to compute the SHA-256 digests used to detect unchanged content.
+ *
+ * @author Andreas Huber
+ */
+public final class Digests {
+
+	/** Size of the buffer used to read files. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private Digests() {
+	}
+
+	/**
+	 * Computes the digest of the given text.
+	 *
+	 * @param text the text, encoded as UTF-8
+	 * @return the hex encoded digest
+	 */
+	public static String sha256(final String text) {
+		return HexFormat.of().formatHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Computes the digest of the given file.
+	 *
+	 * @param file the file to read
+	 * @return the hex encoded digest
+	 * @throws IOException if the file could not be read
+	 */
+	public static String sha256(final Path file) throws IOException {
+		final var digest = newDigest();
+		final var buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Factory for the HTTP client shared by all Confluence REST API clients.
+ *
+ * The client uses a single connection pool sized and tuned by the
+ * {@link Configuration.Connection} settings, so the v1 and v2 API clients reuse the same
+ * keep-alive connections.
+ *
+ * @author Andreas Huber
+ */
+public final class HttpClientFactory {
+
+	/** Idle time after which a pooled connection is validated before reuse. */
+	private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(2);
+
+	private HttpClientFactory() {
+	}
+
+	/**
+	 * Creates a pooled HTTP client with the given settings.
+	 *
+	 * @param connection the connection settings
+	 * @param interceptor observes every response received, e.g. for rate limit headers
+	 * @return the HTTP client
+	 */
+	public static CloseableHttpClient create(final Configuration.Connection connection,
+			final HttpResponseInterceptor interceptor) {
+		final var connectTimeout = Timeout.ofMilliseconds(connection.getConnectTimeout());
+		final var socketTimeout = Timeout.ofMilliseconds(connection.getSocketTimeout());
+		final var keepAlive = TimeValue.ofMilliseconds(connection.getKeepAlive());
+		final var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(connection.getMaxConnections())
+				.setMaxConnPerRoute(connection.getMaxConnectionsPerRoute())
+				.setDefaultSocketConfig(
+						SocketConfig.custom().setSoTimeout(socketTimeout).setTcpNoDelay(true).setSoKeepAlive(true).build())
+				.setDefaultConnectionConfig(ConnectionConfig.custom().setConnectTimeout(connectTimeout)
+						.setSocketTimeout(socketTimeout).setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY).build())
+				.build();
+		final var requestConfig = RequestConfig.custom().setConnectionRequestTimeout(socketTimeout)
+				.setResponseTimeout(socketTimeout).setConnectionKeepAlive(keepAlive)
+				.setContentCompressionEnabled(connection.isCompression()).build();
+		final var builder = HttpClients.custom().setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig).addResponseInterceptorLast(interceptor)
+				.evictExpiredConnections().evictIdleConnections(keepAlive)
+				// retries are handled by the RequestScheduler
+				.disableAutomaticRetries();
+		if (!connection.isCompression()) {
+			builder.disableContentCompression();
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.apache.hc.core5.http.HttpStatus;
+
+import io.github.huber_and.atlassian.wiki.Configuration.Cleanup;
+import io.github.huber_and.atlassian.wiki.PublishReport.MapperReport;
+
+import lombok.extern.slf4j.Slf4j;
+import net.atlassian.wiki.rest.ApiException;
+import net.atlassian.wiki.rest.v1.api.ContentApi;
+import net.atlassian.wiki.rest.v2.api.DescendantsApi;
+import net.atlassian.wiki.rest.v2.api.PageApi;
+import net.atlassian.wiki.rest.v2.model.DescendantsResponse;
+import net.atlassian.wiki.rest.v2.model.OnlyArchivedAndCurrentContentStatus;
+
+/**
+ * Removes remote pages below the root page of a mapper which are no longer published.
+ *
+ * The descendants of the root page are listed and compared with the IDs of the pages
+ * resolved by the run. The remaining pages are orphans, which are reported and then
+ * deleted, archived or moved below a target page according to the {@link Cleanup}
+ * settings. Pages are handled in batches, deleted and moved pages concurrently within a
+ * batch and archived pages with a single request per batch. Deleted pages are handled one
+ * depth level at a time, deepest first. A page which can not be handled is logged and does
+ * not stop the others.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class OrphanCleanup {
+
+	/** Maximum depth of descendants returned by a single listing. */
+	private static final int MAX_DEPTH = 5;
+
+	/** Maximum number of pages archived by a single request. */
+	private static final int MAX_ARCHIVE = 300;
+
+	/** Type of the descendants which are pages. */
+	private static final String PAGE = "page";
+
+	/** The cleanup settings. */
+	private final Cleanup settings;
+
+	/** API for deleting pages. */
+	private final PageApi pageApi;
+
+	/** API for listing the descendants of a page. */
+	private final DescendantsApi descendantsApi;
+
+	/** The v1 API for archiving and moving pages. */
+	private final ContentApi contentApi;
+
+	/** Schedules the API calls within the rate limits of the server. */
+	private final RequestScheduler scheduler;
+
+	/**
+	 * Constructs a cleanup with the given settings and APIs.
+	 *
+	 * @param settings the cleanup settings
+	 * @param pageApi the v2 API for deleting pages
+	 * @param descendantsApi the v2 API for listing descendants
+	 * @param contentApi the v1 API for archiving and moving pages
+	 * @param scheduler the scheduler of the API calls
+	 */
+	public OrphanCleanup(final Cleanup settings, final PageApi pageApi, final DescendantsApi descendantsApi,
+			final ContentApi contentApi, final RequestScheduler scheduler) {
+		this.settings = settings;
+		this.pageApi = pageApi;
+		this.descendantsApi = descendantsApi;
+		this.contentApi = contentApi;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Finds the orphans below the root page and handles them according to the settings.
+	 *
+	 * The titles of the orphans are added to the report together with the number of pages
+	 * actually deleted, archived or moved. Handled pages are removed from the publish state.
+	 * The target page and its descendants are never orphans.
+	 *
+	 * @param rootId the ID of the root page
+	 * @param published the IDs of all pages resolved by the run
+	 * @param targetId the ID of the page orphans are moved to, or null
+	 * @param state the publish state of the space
+	 * @param report the report receiving the orphans
+	 * @throws ApiException if the descendants of the root page could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	public void reconcile(final String rootId, final Set<String> published, final String targetId,
+			final PublishState state, final MapperReport report) throws ApiException, InterruptedException {
+		final var descendants = descendants(rootId);
+		final Map<String, String> parents = new HashMap<>();
+		descendants.forEach(d -> parents.put(d.getId(), d.getParentId()));
+		final List<DescendantsResponse> orphans = new ArrayList<>();
+		for (final DescendantsResponse page : descendants) {
+			if (PAGE.equals(page.getType()) && page.getStatus() != OnlyArchivedAndCurrentContentStatus.ARCHIVED
+					&& !published.contains(page.getId()) && !within(page.getId(), targetId, parents)) {
+				orphans.add(page);
+			}
+		}
+		if (orphans.isEmpty()) {
+			log.info("No orphaned pages below {}", rootId);
+			return;
+		}
+		orphans.forEach(o -> report.getOrphans().add(o.getTitle()));
+		if (settings.isDryRun() || settings.getAction() == Cleanup.Action.REPORT) {
+			orphans.forEach(o -> log.info("Orphaned page {} with id {}", o.getTitle(), o.getId()));
+			return;
+		}
+		log.info("{} {} orphaned pages below {}", settings.getAction(), orphans.size(), rootId);
+		final var batchSize = Math.max(1, settings.getBatchSize());
+		switch (settings.getAction()) {
+		case DELETE -> {
+			// children first, so no page is moved up when its parent goes to the trash
+			final var levels = orphans.stream()
+					.collect(Collectors.groupingBy(o -> depth(o.getId(), parents),
+							() -> new TreeMap<Integer, List<DescendantsResponse>>(Comparator.reverseOrder()),
+							Collectors.toList()));
+			for (final List<DescendantsResponse> level : levels.values()) {
+				concurrently(level, batchSize, o -> {
+					try {
+						scheduler.run("deletePage", true, () -> pageApi.deletePage(Long.parseLong(o.getId()), null, null));
+					} catch (final ApiException e) {
+						// a retried delete finds the page already in the trash
+						if (e.getCode() != HttpStatus.SC_NOT_FOUND) {
+							throw e;
+						}
+					}
+				}, state, report);
+			}
+		}
+		case MOVE -> {
+			if (targetId == null) {
+				log.error("Target page {} of the cleanup not found, orphans are not moved", settings.getTarget());
+				return;
+			}
+			// descendants move together with their topmost orphaned ancestor
+			final var ids = orphans.stream().map(DescendantsResponse::getId).collect(Collectors.toSet());
+			final var topmost = orphans.stream().filter(o -> !ids.contains(o.getParentId())).toList();
+			concurrently(topmost, batchSize,
+					o -> scheduler.run("movePage", true, () -> contentApi.movePage(o.getId(), "append", targetId)),
+					state, report);
+		}
+		case ARCHIVE -> {
+			final var size = Math.min(batchSize, MAX_ARCHIVE);
+			for (int i = 0; i < orphans.size(); i += size) {
+				final var batch = orphans.subList(i, Math.min(i + size, orphans.size()));
+				final var ids = batch.stream().map(o -> Long.parseLong(o.getId())).toList();
+				try {
+					scheduler.execute("archivePages", false, () -> contentApi.archivePages(ids));
+					batch.forEach(o -> handled(o, state, report));
+				} catch (final ApiException e) {
+					log.error("Failed to archive pages {}", batch.stream().map(DescendantsResponse::getTitle).toList(),
+							e);
+				}
+			}
+		}
+		default -> throw new IllegalStateException("Unexpected cleanup action " + settings.getAction());
+		}
+	}
+
+	/**
+	 * Lists all descendants of a page, following the pagination cursor and continuing below
+	 * the deepest level returned by a single listing.
+	 *
+	 * @param rootId the ID of the page
+	 * @return the descendants in the order they were listed
+	 * @throws ApiException if the descendants could not be listed
+	 * @throws InterruptedException if the thread was interrupted while waiting for the scheduler
+	 */
+	private List<DescendantsResponse> descendants(final String rootId) throws ApiException, InterruptedException {
+		final List<DescendantsResponse> result = new ArrayList<>();
+		final var pending = new ArrayDeque<String>();
+		pending.add(rootId);
+		while (!pending.isEmpty()) {
+			final var id = Long.parseLong(pending.poll());
+			String cursor = null;
+			do {
+				final var next = cursor;
+				final var response = scheduler.execute("getPageDescendants", true,
+						() -> descendantsApi.getPageDescendants(id, Pagination.LIMIT, MAX_DEPTH, next));
+				for (final DescendantsResponse descendant : response.getResults()) {
+					result.add(descendant);
+					if (descendant.getDepth() != null && descendant.getDepth() >= MAX_DEPTH) {
+						pending.add(descendant.getId());
+					}
+				}
+				cursor = Pagination.nextCursor(response.getLinks());
+			} while (cursor != null);
+		}
+		return result;
+	}
+
+	private void concurrently(final List<DescendantsResponse> pages, final int batchSize, final Handler handler,
+			final PublishState state, final MapperReport report) {
+		for (int i = 0; i < pages.size(); i += batchSize) {
+			try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (final DescendantsResponse page : pages.subList(i, Math.min(i + batchSize, pages.size()))) {
+					executor.submit(() -> {
+						try {
+							handler.handle(page);
+							handled(page, state, report);
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} catch (final ApiException e) {
+							log.error("Failed to {} orphaned page {}", settings.getAction(), page.getTitle(), e);
+						}
+					});
+				}
+			}
+		}
+	}
+
+	private void handled(final DescendantsResponse page, final PublishState state, final MapperReport report) {
+		log.info("Orphaned page {} with id {} handled by {}", page.getTitle(), page.getId(), settings.getAction());
+		state.remove(page.getTitle());
+		report.addCleaned();
+	}
+
+	private static boolean within(final String id, final String ancestorId, final Map<String, String> parents) {
+		for (var current = id; current != null && ancestorId != null; current = parents.get(current)) {
+			if (current.equals(ancestorId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int depth(final String id, final Map<String, String> parents) {
+		var depth = 0;
+		for (var current = parents.get(id); current != null; current = parents.get(current)) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * The remote call handling a single orphan.
+	 */
+	@FunctionalInterface
+	private interface Handler {
+
+		void handle(DescendantsResponse page) throws ApiException, InterruptedException;
+	}
+}
@@ -29,11 +29,21 @@ import lombok.Getter;
  * mirrors the page hierarchy in Confluence. Each page has a title, an optional source file,
  * and maintains references to its parent and children.
  *
+ * Pages of a {@link PageTree} carry the stable ID of their position in the navigation.
+ * Equality compares the ID, the title, the source and the ID of the parent, so neither
+ * {@link #equals(Object)} nor {@link #hashCode()} walk up the parent chain.
+ *
  * @author Andreas Huber
  */
 @Getter
 public class Page {
 
+	/** The ID of pages which do not belong to a tree. */
+	public static final int NO_ID = -1;
+
+	/** The ID of the page within its tree, or {@link #NO_ID}. */
+	private final int id;
+
 	/** The title of the page. */
 	private final String title;
 
@@ -47,20 +57,33 @@ public class Page {
 	private final List<Page> children = new ArrayList<>();
 
 	/**
-	 * Constructs a new Page with the given title, source, and parent.
+	 * Constructs a new Page with the given title, source, and parent, which does not belong
+	 * to a tree.
 	 *
-	 * If a parent is provided and this page is not already in the parent's children list,
-	 * it will be added automatically.
+	 * If a parent is provided, the page is added to the end of its children.
 	 *
 	 * @param title the title of the page
 	 * @param source the source file path containing the page content
 	 * @param parent the parent page, or null if this is a root page
 	 */
 	public Page(final String title, final Path source, final Page parent) {
+		this(NO_ID, title, source, parent);
+	}
+
+	/**
+	 * Constructs a new page of a tree.
+	 *
+	 * @param id the ID of the page within its tree
+	 * @param title the title of the page
+	 * @param source the source file path containing the page content
+	 * @param parent the parent page, or null if this is a root page
+	 */
+	Page(final int id, final String title, final Path source, final Page parent) {
+		this.id = id;
 		this.title = title;
 		this.source = source;
 		this.parent = parent;
-		if (parent != null && !parent.children.contains(this)) {
+		if (parent != null) {
 			parent.children.add(this);
 		}
 	}
@@ -74,18 +97,23 @@ public class Page {
 			return false;
 		}
 		final var other = (Page) obj;
-		return Objects.equals(parent, other.parent) && Objects.equals(source, other.source)
+		return id == other.id && parentId() == other.parentId() && Objects.equals(source, other.source)
 				&& Objects.equals(title, other.title);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(parent, source, title);
+		return Objects.hash(id, source, title);
 	}
 
 	@Override
 	public String toString() {
-		return "NavItem [title=" + title + ", source=" + source + ", parent=" + parent + "]";
+		return "Page [id=" + id + ", title=" + title + ", source=" + source + ", parent="
+				+ (parent != null ? parent.title : null) + "]";
+	}
+
+	private int parentId() {
+		return parent != null ? parent.id : NO_ID;
 	}
 
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import io.github.huber_and.atlassian.wiki.transformer.Transformer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prepares the content of pages ahead of their upload.
+ *
+ * A producer walks the page tree in pre-order and hands every page to a pool of CPU
+ * workers, which parse and transform it while the pages prepared before are uploaded. The
+ * number of prepared pages waiting for their upload is bounded, so the producer blocks as
+ * soon as the uploads fall behind and memory stays flat on large sites. Walking in
+ * pre-order guarantees that a parent is always prepared before its children.
+ *
+ * Every page with a source must either be taken or discarded, otherwise its slot is never
+ * released.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class PagePipeline implements AutoCloseable {
+
+	/** Renders the pages, reusing results of other mappers. */
+	private final RenderCache renderer;
+
+	/** The CPU workers parsing and transforming the pages. */
+	private final Executor workers;
+
+	/** Slots for the pages prepared but not yet taken. */
+	private final Semaphore capacity;
+
+	/** The pending results by page identity. */
+	private final Map<Page, CompletableFuture<Transformer.Result>> prepared = Collections
+			.synchronizedMap(new IdentityHashMap<>());
+
+	/** The thread walking the page tree. */
+	private Thread producer;
+
+	/**
+	 * Constructs a pipeline.
+	 *
+	 * @param renderer renders the pages
+	 * @param workers the CPU workers parsing and transforming the pages
+	 * @param capacity the maximum number of prepared pages waiting for their upload
+	 */
+	public PagePipeline(final RenderCache renderer, final Executor workers, final int capacity) {
+		this.renderer = renderer;
+		this.workers = workers;
+		this.capacity = new Semaphore(Math.max(1, capacity));
+	}
+
+	/**
+	 * Starts preparing the given pages and all their children.
+	 *
+	 * @param pages the pages in the order they are uploaded
+	 */
+	public void start(final List<Page> pages) {
+		start(pages, true);
+	}
+
+	/**
+	 * Starts preparing the given pages, optionally together with all their children.
+	 *
+	 * @param pages the pages in the order they are uploaded
+	 * @param children whether the children of the pages are prepared as well
+	 */
+	public void start(final Collection<Page> pages, final boolean children) {
+		producer = Thread.ofVirtual().name("page-pipeline").start(() -> {
+			try {
+				produce(pages, children);
+			} catch (final InterruptedException e) {
+				log.debug("Page pipeline stopped");
+			}
+		});
+	}
+
+	private void produce(final Collection<Page> pages, final boolean children) throws InterruptedException {
+		for (final Page page : pages) {
+			if (page.getSource() != null) {
+				capacity.acquire();
+				final var future = slot(page);
+				try {
+					workers.execute(() -> {
+						try {
+							future.complete(renderer.render(page));
+						} catch (final Throwable e) {
+							// also errors, otherwise take() waits for this page forever
+							future.completeExceptionally(e);
+						}
+					});
+				} catch (final RejectedExecutionException e) {
+					future.completeExceptionally(e);
+				}
+			}
+			if (children) {
+				produce(page.getChildren(), true);
+			}
+		}
+	}
+
+	private CompletableFuture<Transformer.Result> slot(final Page page) {
+		return prepared.computeIfAbsent(page, p -> new CompletableFuture<>());
+	}
+
+	/**
+	 * Waits until the given page is prepared and releases its slot.
+	 *
+	 * @param page the page
+	 * @return the transformed content, or null if the page has no source
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 * @throws Exception if the page could not be parsed or transformed
+	 */
+	public Transformer.Result take(final Page page) throws Exception {
+		if (page.getSource() == null) {
+			return null;
+		}
+		final var future = slot(page);
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			throw e.getCause() instanceof final Exception cause ? cause : e;
+		} finally {
+			if (future.isDone()) {
+				prepared.remove(page);
+				capacity.release();
+			}
+		}
+	}
+
+	/**
+	 * Releases the slots of the given pages and all their children without using their
+	 * content, e.g. because their parent could not be published.
+	 *
+	 * @param pages the pages to discard
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public void discard(final List<Page> pages) throws InterruptedException {
+		for (final Page page : pages) {
+			try {
+				take(page);
+			} catch (final InterruptedException e) {
+				throw e;
+			} catch (final Exception e) {
+				log.debug("Discarded page {} failed to prepare", page.getTitle(), e);
+			}
+			discard(page.getChildren());
+		}
+	}
+
+	/**
+	 * Stops preparing further pages.
+	 */
+	@Override
+	public void close() {
+		if (producer != null) {
+			producer.interrupt();
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The pages of a site in navigation order with indexes by path, title and source.
+ *
+ * Pages are added parent first and get the index of their insertion as stable ID. Adding a
+ * page and every lookup take constant time, so large navigations are built and searched in
+ * linear time. The path of a page is made of the titles from its root down to the page,
+ * separated by {@code /}. Where several pages share a title or a source, the indexes
+ * return the first one in navigation order.
+ *
+ * A tree is built by a single parser thread and only read afterwards.
+ *
+ * @author Andreas Huber
+ */
+public class PageTree {
+
+	/** The separator of the titles in the path of a page. */
+	public static final String SEPARATOR = "/";
+
+	/** The pages without parent in navigation order. */
+	private final List<Page> roots = new ArrayList<>();
+
+	/** All pages in navigation order, indexed by their ID. */
+	private final List<Page> pages = new ArrayList<>();
+
+	/** The first page by path. */
+	private final Map<String, Page> byPath = new HashMap<>();
+
+	/** The first page by title. */
+	private final Map<String, Page> byTitle = new HashMap<>();
+
+	/** The first page by absolute source file. */
+	private final Map<Path, Page> bySource = new HashMap<>();
+
+	/** The path of every page, indexed by its ID. */
+	private final List<String> paths = new ArrayList<>();
+
+	/**
+	 * Adds a page to the end of the children of its parent, or to the roots.
+	 *
+	 * @param title the title of the page
+	 * @param source the source file of the page, or null
+	 * @param parent the parent page, which must belong to this tree, or null for a root page
+	 * @return the new page
+	 * @throws IllegalArgumentException if the parent belongs to another tree
+	 */
+	public Page add(final String title, final Path source, final Page parent) {
+		if (parent != null && !contains(parent)) {
+			throw new IllegalArgumentException("Parent " + parent.getTitle() + " does not belong to the tree");
+		}
+		final var page = new Page(pages.size(), title, source, parent);
+		final var path = parent == null ? title : paths.get(parent.getId()) + SEPARATOR + title;
+		pages.add(page);
+		paths.add(path);
+		if (parent == null) {
+			roots.add(page);
+		}
+		byPath.putIfAbsent(path, page);
+		byTitle.putIfAbsent(title, page);
+		if (source != null) {
+			bySource.putIfAbsent(source.toAbsolutePath().normalize(), page);
+		}
+		return page;
+	}
+
+	/**
+	 * Returns the pages without parent in navigation order.
+	 *
+	 * @return the unmodifiable list of root pages
+	 */
+	public List<Page> getRoots() {
+		return Collections.unmodifiableList(roots);
+	}
+
+	/**
+	 * Returns all pages, each parent before its children.
+	 *
+	 * @return the unmodifiable list of pages, indexed by their ID
+	 */
+	public List<Page> getPages() {
+		return Collections.unmodifiableList(pages);
+	}
+
+	/**
+	 * Returns the number of pages.
+	 *
+	 * @return the number of pages
+	 */
+	public int size() {
+		return pages.size();
+	}
+
+	/**
+	 * Checks whether the page belongs to this tree.
+	 *
+	 * @param page the page
+	 * @return true if the page was added to this tree
+	 */
+	public boolean contains(final Page page) {
+		return page.getId() >= 0 && page.getId() < pages.size() && pages.get(page.getId()) == page;
+	}
+
+	/**
+	 * Returns the path of a page of this tree.
+	 *
+	 * @param page the page
+	 * @return the titles from the root down to the page, separated by {@value #SEPARATOR}
+	 * @throws IllegalArgumentException if the page belongs to another tree
+	 */
+	public String pathOf(final Page page) {
+		if (!contains(page)) {
+			throw new IllegalArgumentException("Page " + page.getTitle() + " does not belong to the tree");
+		}
+		return paths.get(page.getId());
+	}
+
+	/**
+	 * Checks whether another tree has the same pages with the same sources in the same
+	 * places, so a page of one tree stands for the page with the same ID in the other.
+	 *
+	 * @param other the other tree
+	 * @return true if the structure of both trees is equal
+	 */
+	public boolean hasSameStructure(final PageTree other) {
+		if (other.size() != size()) {
+			return false;
+		}
+		for (var id = 0; id < pages.size(); id++) {
+			if (!paths.get(id).equals(other.paths.get(id)) || !pages.get(id).equals(other.pages.get(id))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a page by its path.
+	 *
+	 * @param path the titles from the root down to the page, separated by {@value #SEPARATOR}
+	 * @return the first page with this path, or empty
+	 */
+	public Optional<Page> findByPath(final String path) {
+		return Optional.ofNullable(byPath.get(path));
+	}
+
+	/**
+	 * Finds a page by its title.
+	 *
+	 * @param title the title of the page
+	 * @return the first page with this title, or empty
+	 */
+	public Optional<Page> findByTitle(final String title) {
+		return Optional.ofNullable(byTitle.get(title));
+	}
+
+	/**
+	 * Finds a page by its source file.
+	 *
+	 * @param source the source file, relative paths are resolved against the working directory
+	 * @return the first page with this source, or empty
+	 */
+	public Optional<Page> findBySource(final Path source) {
+		return Optional.ofNullable(bySource.get(source.toAbsolutePath().normalize()));
+	}
+}
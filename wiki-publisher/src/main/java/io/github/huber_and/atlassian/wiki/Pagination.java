@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import net.atlassian.wiki.rest.v2.model.MultiEntityLinks;
+
+/**
+ * Helper for the cursor based pagination of the Confluence v2 REST API.
+ *
+ * Listing endpoints return a relative link to the next set of results, which carries the
+ * cursor as query parameter. The link is absent on the last set of results.
+ *
+ * @author Andreas Huber
+ */
+public final class Pagination {
+
+	/** The maximum number of results the listing endpoints return per request. */
+	public static final int LIMIT = 250;
+
+	private Pagination() {
+	}
+
+	/**
+	 * Extracts the cursor of the next set of results.
+	 *
+	 * @param links the links of a listing response, may be null
+	 * @return the cursor, or null if there are no more results
+	 */
+	public static String nextCursor(final MultiEntityLinks links) {
+		if (links == null || links.getNext() == null) {
+			return null;
+		}
+		final var query = URI.create(links.getNext()).getRawQuery();
+		if (query == null) {
+			return null;
+		}
+		for (final String parameter : query.split("&")) {
+			if (parameter.startsWith("cursor=")) {
+				return URLDecoder.decode(parameter.substring("cursor=".length()), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+}
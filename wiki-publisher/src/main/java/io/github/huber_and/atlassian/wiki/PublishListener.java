@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.time.Duration;
+
+import io.github.huber_and.atlassian.wiki.PublishReport.Outcome;
+
+/**
+ * Receives events about the progress of a publishing run.
+ *
+ * The events are sent from many threads at the same time, so implementations must be thread
+ * safe and should return quickly. All methods do nothing by default.
+ *
+ * @author Andreas Huber
+ */
+public interface PublishListener {
+
+	/** Listener ignoring all events. */
+	PublishListener NONE = new PublishListener() {
+	};
+
+	/**
+	 * Called after the content of a page was loaded from its source.
+	 *
+	 * @param page the page
+	 * @param duration the time spent parsing
+	 */
+	default void parsed(final Page page, final Duration duration) {
+	}
+
+	/**
+	 * Called after the content of a page was transformed to storage format.
+	 *
+	 * @param page the page
+	 * @param duration the time spent transforming
+	 */
+	default void transformed(final Page page, final Duration duration) {
+	}
+
+	/**
+	 * Called after each attempt of a remote call.
+	 *
+	 * @param operation the name of the API operation
+	 * @param status the HTTP status, 0 if no response was received
+	 * @param duration the latency of the call
+	 */
+	default void requested(final String operation, final int status, final Duration duration) {
+	}
+
+	/**
+	 * Called before a failed remote call is retried.
+	 *
+	 * @param operation the name of the API operation
+	 * @param status the HTTP status of the failed attempt
+	 * @param attempt the number of the retry, starting at 1
+	 */
+	default void retrying(final String operation, final int status, final int attempt) {
+	}
+
+	/**
+	 * Called after attachments were uploaded to a page.
+	 *
+	 * @param pageId the ID of the page
+	 * @param files the number of uploaded files
+	 * @param bytes the total size of the uploaded files
+	 */
+	default void uploaded(final String pageId, final int files, final long bytes) {
+	}
+
+	/**
+	 * Called once for every page when its outcome is known.
+	 *
+	 * @param page the page
+	 * @param outcome the outcome
+	 */
+	default void published(final Page page, final Outcome outcome) {
+	}
+}
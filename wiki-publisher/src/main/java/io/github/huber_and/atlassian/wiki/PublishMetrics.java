@@ -0,0 +1,325 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.core5.http.HttpStatus;
+
+import io.github.huber_and.atlassian.wiki.PublishReport.Outcome;
+
+/**
+ * Collects timers and counters of a publishing run.
+ *
+ * Timers measure the parsing and transformation of the pages and the latency of every API
+ * operation, named {@code http.} followed by the operation, e.g. {@code http.updatePage}.
+ * Each timer keeps a latency histogram with fixed buckets, from which percentiles are
+ * estimated. Counters track the page outcomes, the uploaded attachments, retries and
+ * throttled requests.
+ *
+ * @author Andreas Huber
+ */
+public class PublishMetrics implements PublishListener {
+
+	/** Timer of loading page content from the sources. */
+	public static final String PARSE = "parse";
+
+	/** Timer of transforming page content to storage format. */
+	public static final String TRANSFORM = "transform";
+
+	/** Prefix of the timers of the API operations. */
+	public static final String HTTP = "http.";
+
+	/** Counter of created pages. */
+	public static final String PAGES_CREATED = "pages.created";
+
+	/** Counter of updated pages. */
+	public static final String PAGES_UPDATED = "pages.updated";
+
+	/** Counter of unchanged pages. */
+	public static final String PAGES_SKIPPED = "pages.skipped";
+
+	/** Counter of failed pages. */
+	public static final String PAGES_FAILED = "pages.failed";
+
+	/** Counter of uploaded attachment files. */
+	public static final String ATTACHMENTS_UPLOADED = "attachments.uploaded";
+
+	/** Counter of uploaded attachment bytes. */
+	public static final String BYTES_UPLOADED = "bytes.uploaded";
+
+	/** Counter of retried API calls. */
+	public static final String RETRIES = "http.retries";
+
+	/** Counter of API calls rejected with status 429. */
+	public static final String THROTTLED = "http.throttled";
+
+	/** Counter of API calls failed with an error status or without response. */
+	public static final String ERRORS = "http.errors";
+
+	/** Upper bounds of the histogram buckets in milliseconds, the last bucket is unbounded. */
+	static final long[] BUCKETS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+	/** The timers by name. */
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+	/** The counters by name. */
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	@Override
+	public void parsed(final Page page, final Duration duration) {
+		timer(PARSE).record(duration);
+	}
+
+	@Override
+	public void transformed(final Page page, final Duration duration) {
+		timer(TRANSFORM).record(duration);
+	}
+
+	@Override
+	public void requested(final String operation, final int status, final Duration duration) {
+		timer(HTTP + operation).record(duration);
+		if (status == HttpStatus.SC_TOO_MANY_REQUESTS) {
+			increment(THROTTLED, 1);
+		}
+		if (status == 0 || status >= HttpStatus.SC_BAD_REQUEST) {
+			increment(ERRORS, 1);
+		}
+	}
+
+	@Override
+	public void retrying(final String operation, final int status, final int attempt) {
+		increment(RETRIES, 1);
+	}
+
+	@Override
+	public void uploaded(final String pageId, final int files, final long bytes) {
+		increment(ATTACHMENTS_UPLOADED, files);
+		increment(BYTES_UPLOADED, bytes);
+	}
+
+	@Override
+	public void published(final Page page, final Outcome outcome) {
+		increment(switch (outcome) {
+		case CREATED -> PAGES_CREATED;
+		case UPDATED -> PAGES_UPDATED;
+		case SKIPPED -> PAGES_SKIPPED;
+		case FAILED -> PAGES_FAILED;
+		}, 1);
+	}
+
+	/**
+	 * Returns the timer with the given name, creating it if necessary.
+	 *
+	 * @param name the name of the timer
+	 * @return the timer
+	 */
+	public Timer timer(final String name) {
+		return timers.computeIfAbsent(name, n -> new Timer());
+	}
+
+	/**
+	 * Adds to the counter with the given name.
+	 *
+	 * @param name the name of the counter
+	 * @param amount the amount to add
+	 */
+	public void increment(final String name, final long amount) {
+		counters.computeIfAbsent(name, n -> new LongAdder()).add(amount);
+	}
+
+	/**
+	 * Returns the value of a counter.
+	 *
+	 * @param name the name of the counter
+	 * @return the value, 0 if nothing was counted
+	 */
+	public long count(final String name) {
+		final var counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Returns all timers sorted by name.
+	 *
+	 * @return the timers
+	 */
+	public Map<String, Timer> getTimers() {
+		return Collections.unmodifiableMap(new TreeMap<>(timers));
+	}
+
+	/**
+	 * Returns the values of all counters sorted by name.
+	 *
+	 * @return the counter values
+	 */
+	public Map<String, Long> getCounters() {
+		final Map<String, Long> result = new TreeMap<>();
+		counters.forEach((name, counter) -> result.put(name, counter.sum()));
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Returns an independent copy of the current values.
+	 *
+	 * @return the copy
+	 */
+	public PublishMetrics snapshot() {
+		final var snapshot = new PublishMetrics();
+		timers.forEach((name, timer) -> snapshot.timers.put(name, timer.copy()));
+		counters.forEach((name, counter) -> snapshot.increment(name, counter.sum()));
+		return snapshot;
+	}
+
+	/**
+	 * Removes all timers and counters.
+	 */
+	public void reset() {
+		timers.clear();
+		counters.clear();
+	}
+
+	/**
+	 * Measures the number and duration of events with a latency histogram.
+	 */
+	public static class Timer {
+
+		/** The number of events. */
+		private final LongAdder count = new LongAdder();
+
+		/** The total duration in nanoseconds. */
+		private final LongAdder total = new LongAdder();
+
+		/** The longest duration in nanoseconds. */
+		private final AtomicLong max = new AtomicLong();
+
+		/** The number of events per bucket of {@link PublishMetrics#BUCKETS}. */
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+
+		/**
+		 * Records an event.
+		 *
+		 * @param duration the duration of the event
+		 */
+		public void record(final Duration duration) {
+			final var nanos = duration.toNanos();
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+			buckets.incrementAndGet(bucket(nanos));
+		}
+
+		/**
+		 * Returns the number of events.
+		 *
+		 * @return the number of events
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+
+		/**
+		 * Returns the total duration of all events.
+		 *
+		 * @return the total duration
+		 */
+		public Duration getTotal() {
+			return Duration.ofNanos(total.sum());
+		}
+
+		/**
+		 * Returns the mean duration of the events.
+		 *
+		 * @return the mean duration, zero without events
+		 */
+		public Duration getMean() {
+			final var events = count.sum();
+			return events == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / events);
+		}
+
+		/**
+		 * Returns the longest duration of the events.
+		 *
+		 * @return the longest duration
+		 */
+		public Duration getMax() {
+			return Duration.ofNanos(max.get());
+		}
+
+		/**
+		 * Estimates a percentile as upper bound of the histogram bucket containing it.
+		 *
+		 * @param percentile the percentile between 0 and 1
+		 * @return the estimated duration, never more than the longest duration
+		 */
+		public Duration percentile(final double percentile) {
+			final var events = getCount();
+			final var rank = (long) Math.ceil(percentile * events);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank && seen > 0) {
+					final var bound = Duration.ofMillis(BUCKETS[i]);
+					return bound.compareTo(getMax()) < 0 ? bound : getMax();
+				}
+			}
+			return getMax();
+		}
+
+		/**
+		 * Returns the histogram keyed by the upper bound of each bucket in milliseconds,
+		 * {@code +Inf} for the last one. Empty buckets are included.
+		 *
+		 * @return the number of events per bucket
+		 */
+		public Map<String, Long> getHistogram() {
+			final Map<String, Long> result = new LinkedHashMap<>();
+			for (int i = 0; i < BUCKETS.length; i++) {
+				result.put(Long.toString(BUCKETS[i]), buckets.get(i));
+			}
+			result.put("+Inf", buckets.get(BUCKETS.length));
+			return result;
+		}
+
+		private Timer copy() {
+			final var copy = new Timer();
+			copy.count.add(count.sum());
+			copy.total.add(total.sum());
+			copy.max.set(max.get());
+			for (int i = 0; i < buckets.length(); i++) {
+				copy.buckets.set(i, buckets.get(i));
+			}
+			return copy;
+		}
+
+		private static int bucket(final long nanos) {
+			for (int i = 0; i < BUCKETS.length; i++) {
+				if (nanos <= BUCKETS[i] * 1_000_000L) {
+					return i;
+				}
+			}
+			return BUCKETS.length;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Summary of a publishing run.
+ *
+ * Holds one {@link MapperReport} per configured mapper with the number of pages created,
+ * updated, skipped and failed, the duration and the error which aborted the mapper, if any,
+ * together with the {@link PublishMetrics} of the run.
+ *
+ * @author Andreas Huber
+ */
+public class PublishReport {
+
+	/** The reports of the mappers in the order they were added. */
+	@Getter
+	private final List<MapperReport> mappers = new CopyOnWriteArrayList<>();
+
+	/** The timers and counters of the run. */
+	@Getter
+	@Setter
+	private PublishMetrics metrics = new PublishMetrics();
+
+	/**
+	 * Adds the report of a mapper.
+	 *
+	 * @param mapper the mapper report
+	 */
+	public void add(final MapperReport mapper) {
+		mappers.add(mapper);
+	}
+
+	/**
+	 * Returns the number of pages created by all mappers.
+	 *
+	 * @return the number of created pages
+	 */
+	public int getCreated() {
+		return mappers.stream().mapToInt(MapperReport::getCreated).sum();
+	}
+
+	/**
+	 * Returns the number of pages updated by all mappers.
+	 *
+	 * @return the number of updated pages
+	 */
+	public int getUpdated() {
+		return mappers.stream().mapToInt(MapperReport::getUpdated).sum();
+	}
+
+	/**
+	 * Returns the number of unchanged pages skipped by all mappers.
+	 *
+	 * @return the number of skipped pages
+	 */
+	public int getSkipped() {
+		return mappers.stream().mapToInt(MapperReport::getSkipped).sum();
+	}
+
+	/**
+	 * Returns the number of pages which failed to publish in all mappers.
+	 *
+	 * @return the number of failed pages
+	 */
+	public int getFailed() {
+		return mappers.stream().mapToInt(MapperReport::getFailed).sum();
+	}
+
+	/**
+	 * Checks whether any page or mapper failed.
+	 *
+	 * @return true if the run was not completely successful
+	 */
+	public boolean hasFailures() {
+		return mappers.stream().anyMatch(m -> m.getFailed() > 0 || m.getError() != null);
+	}
+
+	/**
+	 * Writes the report as JSON document, with the durations in milliseconds.
+	 *
+	 * @param file the file to write, parent directories are created
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(final Path file) throws IOException {
+		final Map<String, Object> json = new LinkedHashMap<>();
+		json.put("created", getCreated());
+		json.put("updated", getUpdated());
+		json.put("skipped", getSkipped());
+		json.put("failed", getFailed());
+		json.put("mappers", mappers.stream().map(m -> {
+			final Map<String, Object> mapper = new LinkedHashMap<>();
+			mapper.put("spaceKey", m.getSpaceKey());
+			mapper.put("created", m.getCreated());
+			mapper.put("updated", m.getUpdated());
+			mapper.put("skipped", m.getSkipped());
+			mapper.put("failed", m.getFailed());
+			mapper.put("durationMs", m.getDuration().toMillis());
+			if (!m.getOrphans().isEmpty()) {
+				mapper.put("orphans", m.getOrphans());
+				mapper.put("cleaned", m.getCleaned());
+			}
+			if (m.getError() != null) {
+				mapper.put("error", StringUtils.defaultIfBlank(m.getError().getMessage(), m.getError().toString()));
+			}
+			return mapper;
+		}).toList());
+		final Map<String, Object> timers = new LinkedHashMap<>();
+		metrics.getTimers().forEach((name, t) -> {
+			final Map<String, Object> timer = new LinkedHashMap<>();
+			timer.put("count", t.getCount());
+			timer.put("totalMs", millis(t.getTotal()));
+			timer.put("meanMs", millis(t.getMean()));
+			timer.put("p50Ms", millis(t.percentile(0.5)));
+			timer.put("p95Ms", millis(t.percentile(0.95)));
+			timer.put("p99Ms", millis(t.percentile(0.99)));
+			timer.put("maxMs", millis(t.getMax()));
+			timer.put("histogram", t.getHistogram());
+			timers.put(name, timer);
+		});
+		json.put("timers", timers);
+		json.put("counters", metrics.getCounters());
+		final var parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), json);
+	}
+
+	private static double millis(final Duration duration) {
+		return duration.toNanos() / 1_000_000.0;
+	}
+
+	/**
+	 * The outcome of publishing a single page.
+	 */
+	public enum Outcome {
+		/** The page did not exist and was created. */
+		CREATED,
+		/** The page existed and its content was updated. */
+		UPDATED,
+		/** The page existed and was unchanged. */
+		SKIPPED,
+		/** The page could not be published. */
+		FAILED
+	}
+
+	/**
+	 * Summary of publishing a single mapper.
+	 */
+	public static class MapperReport {
+
+		/** The key of the target space. */
+		@Getter
+		private final String spaceKey;
+
+		/** The number of created pages. */
+		private final AtomicInteger created = new AtomicInteger();
+
+		/** The number of updated pages. */
+		private final AtomicInteger updated = new AtomicInteger();
+
+		/** The number of unchanged pages. */
+		private final AtomicInteger skipped = new AtomicInteger();
+
+		/** The number of failed pages. */
+		private final AtomicInteger failed = new AtomicInteger();
+
+		/** The titles of the remote pages below the root page which are no longer published. */
+		@Getter
+		private final List<String> orphans = new CopyOnWriteArrayList<>();
+
+		/** The number of orphans deleted, archived or moved. */
+		private final AtomicInteger cleaned = new AtomicInteger();
+
+		/** The time spent publishing the mapper. */
+		@Getter
+		@Setter
+		private Duration duration = Duration.ZERO;
+
+		/** The error which aborted the mapper, or null. */
+		@Getter
+		@Setter
+		private Exception error;
+
+		/**
+		 * Constructs an empty report for the given space.
+		 *
+		 * @param spaceKey the key of the target space
+		 */
+		public MapperReport(final String spaceKey) {
+			this.spaceKey = spaceKey;
+		}
+
+		/**
+		 * Records the outcome of a page.
+		 *
+		 * @param outcome the outcome
+		 */
+		public void add(final Outcome outcome) {
+			add(outcome, 1);
+		}
+
+		/**
+		 * Records the same outcome for several pages, e.g. for a subtree which could not be
+		 * published.
+		 *
+		 * @param outcome the outcome
+		 * @param count the number of pages
+		 */
+		public void add(final Outcome outcome, final int count) {
+			switch (outcome) {
+			case CREATED -> created.addAndGet(count);
+			case UPDATED -> updated.addAndGet(count);
+			case SKIPPED -> skipped.addAndGet(count);
+			case FAILED -> failed.addAndGet(count);
+			}
+		}
+
+		/**
+		 * Records an orphan which was deleted, archived or moved.
+		 */
+		public void addCleaned() {
+			cleaned.incrementAndGet();
+		}
+
+		/**
+		 * Returns the number of orphans deleted, archived or moved.
+		 *
+		 * @return the number of cleaned orphans
+		 */
+		public int getCleaned() {
+			return cleaned.get();
+		}
+
+		/**
+		 * Returns the number of created pages.
+		 *
+		 * @return the number of created pages
+		 */
+		public int getCreated() {
+			return created.get();
+		}
+
+		/**
+		 * Returns the number of updated pages.
+		 *
+		 * @return the number of updated pages
+		 */
+		public int getUpdated() {
+			return updated.get();
+		}
+
+		/**
+		 * Returns the number of unchanged pages.
+		 *
+		 * @return the number of skipped pages
+		 */
+		public int getSkipped() {
+			return skipped.get();
+		}
+
+		/**
+		 * Returns the number of failed pages.
+		 *
+		 * @return the number of failed pages
+		 */
+		public int getFailed() {
+			return failed.get();
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistent state of the pages published to a Confluence space.
+ *
+ * The state remembers for each published page its remote ID, version, the digests of its
+ * body and attachments and the content properties written to it. It is stored as JSON lines
+ * file, one entry per page, so later runs can resolve pages and skip unchanged content
+ * without reading the remote space.
+ * Entries are keyed by the page title, as Confluence enforces unique titles within a
+ * space while several pages may share the same source file.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class PublishState {
+
+	/** Reads and writes the entries of the state file. */
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.setDefaultPropertyInclusion(JsonInclude.Include.NON_EMPTY)
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	/** The file the state is stored in, or null if the state is not persisted. */
+	@Getter
+	private final Path file;
+
+	/** The published pages keyed by their title. */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs an empty state stored in the given file.
+	 *
+	 * @param file the state file, or null to keep the state in memory only
+	 */
+	public PublishState(final Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Resolves the state file for the given mapper.
+	 *
+	 * The file is placed next to the content directory of the mapper and named after the
+	 * target space and the content directory, so mappers sharing the same content as well as
+	 * mappers of sibling content directories publishing into the same space keep separate
+	 * states.
+	 *
+	 * @param mapper the space mapper
+	 * @return the path of the state file
+	 */
+	public static Path fileOf(final Configuration.Mapper mapper) {
+		final var path = Path.of(mapper.getPath()).toAbsolutePath().normalize();
+		final var name = path.getFileName() == null ? "" : "-" + path.getFileName();
+		return path.resolveSibling(".confluence-" + mapper.getSpaceKey() + name + ".jsonl");
+	}
+
+	/**
+	 * Loads the state from the given file.
+	 *
+	 * A missing or unreadable file results in an empty state, which makes the publisher
+	 * fall back to the remote space. Entries without a title are skipped.
+	 *
+	 * @param file the state file
+	 * @return the loaded state
+	 */
+	public static PublishState load(final Path file) {
+		final var state = new PublishState(file);
+		if (!Files.isRegularFile(file)) {
+			return state;
+		}
+		try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+			for (final String line : (Iterable<String>) lines::iterator) {
+				if (!line.isBlank()) {
+					final var entry = MAPPER.readValue(line, Entry.class);
+					if (entry.getTitle() == null) {
+						log.warn("Skip entry without title in publish state {}: {}", file, line);
+					} else {
+						state.entries.put(entry.getTitle(), entry);
+					}
+				}
+			}
+			log.info("Loaded {} published pages from {}", state.entries.size(), file);
+		} catch (final IOException | RuntimeException e) {
+			log.warn("Failed to read publish state {}, falling back to the remote space", file, e);
+			state.entries.clear();
+		}
+		return state;
+	}
+
+	/**
+	 * Writes the state to its file.
+	 *
+	 * The entries are written to a temporary file first, which then replaces the state file,
+	 * so an interrupted run never leaves a truncated state behind.
+	 *
+	 * @throws IOException if the state could not be written
+	 */
+	public void save() throws IOException {
+		if (file == null) {
+			return;
+		}
+		final var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+			for (final Entry entry : new TreeMap<>(entries).values()) {
+				writer.write(MAPPER.writeValueAsString(entry));
+				writer.newLine();
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the entry of a published page.
+	 *
+	 * @param title the page title
+	 * @return the entry, or empty if the page has not been published yet
+	 */
+	public Optional<Entry> get(final String title) {
+		return Optional.ofNullable(title).map(entries::get);
+	}
+
+	/**
+	 * Returns the entry of the page, creating an empty one if it does not exist.
+	 *
+	 * @param title the page title
+	 * @return the entry
+	 */
+	public Entry getOrCreate(final String title) {
+		return entries.computeIfAbsent(title, Entry::new);
+	}
+
+	/**
+	 * Removes the entry of a page, e.g. because the page no longer exists remotely.
+	 *
+	 * @param title the page title
+	 */
+	public void remove(final String title) {
+		entries.remove(title);
+	}
+
+	/**
+	 * State of a single published page.
+	 */
+	@Data
+	public static class Entry {
+		/** The title of the page. */
+		private String title;
+
+		/** The source file of the page, relative to the content directory. */
+		private String source;
+
+		/** The remote page ID. */
+		private String id;
+
+		/** The last published version of the page. */
+		private int version;
+
+		/** The digest of the last published body. */
+		private String hash;
+
+		/** The digests of the uploaded attachments keyed by their file name. */
+		private Map<String, String> attachments = new ConcurrentHashMap<>();
+
+		/** The content properties written by the publisher keyed by their key. */
+		private Map<String, Property> properties = new ConcurrentHashMap<>();
+
+		/**
+		 * Constructs an empty entry, used for deserialization.
+		 */
+		public Entry() {
+		}
+
+		/**
+		 * Constructs an empty entry for the given page.
+		 *
+		 * @param title the page title
+		 */
+		public Entry(final String title) {
+			this.title = title;
+		}
+
+		/**
+		 * Replaces the digests of the uploaded attachments. The attachments are synced while
+		 * the page is published, so the map is copied into a concurrent one.
+		 *
+		 * @param attachments the digests keyed by file name, or null for none
+		 */
+		public void setAttachments(final Map<String, String> attachments) {
+			this.attachments = attachments == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(attachments);
+		}
+
+		/**
+		 * Replaces the known content properties. The properties are written by separate tasks
+		 * while the page is published, so the map is copied into a concurrent one.
+		 *
+		 * @param properties the properties keyed by their key, or null for none
+		 */
+		public void setProperties(final Map<String, Property> properties) {
+			this.properties = properties == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(properties);
+		}
+	}
+
+	/**
+	 * A content property known to exist on a published page.
+	 */
+	@Data
+	public static class Property {
+		/** The remote property ID. */
+		private String id;
+
+		/** The current version of the property. */
+		private int version;
+
+		/**
+		 * Constructs an empty property, used for deserialization.
+		 */
+		public Property() {
+		}
+
+		/**
+		 * Constructs a property with the given ID and version.
+		 *
+		 * @param id the remote property ID
+		 * @param version the current version
+		 */
+		public Property(final String id, final int version) {
+			this.id = id;
+			this.version = version;
+		}
+	}
+}
@@ -15,11 +15,26 @@
  */
 package io.github.huber_and.atlassian.wiki;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 
 import io.github.huber_and.atlassian.wiki.Configuration.Mapper;
+import io.github.huber_and.atlassian.wiki.PublishReport.MapperReport;
+import io.github.huber_and.atlassian.wiki.PublishReport.Outcome;
 import io.github.huber_and.atlassian.wiki.parser.AntoraParser;
 import io.github.huber_and.atlassian.wiki.parser.Parser;
 import io.github.huber_and.atlassian.wiki.transformer.ConfluenceTransformer;
@@ -36,7 +51,7 @@ import lombok.extern.slf4j.Slf4j;
  * @author Andreas Huber
  */
 @Slf4j
-public class Publisher {
+public class Publisher implements AutoCloseable {
 
 	/** The configuration containing space mappings and authentication details. */
 	private final Configuration config;
@@ -47,6 +62,12 @@ public class Publisher {
 	/** The parser for extracting page content from source files. */
 	private final Parser parser;
 
+	/** The timers and counters of the current run. */
+	private final PublishMetrics metrics = new PublishMetrics();
+
+	/** The sessions and page trees of the mappers kept between the runs while watching. */
+	private final Map<Mapper, Watched> watched = new ConcurrentHashMap<>();
+
 	/**
 	 * Constructs a Publisher with the given configuration.
 	 *
@@ -55,39 +76,174 @@ public class Publisher {
 	 * @param config the publisher configuration
 	 */
 	public Publisher(final Configuration config) {
+		this(config, PublishListener.NONE);
+	}
+
+	/**
+	 * Constructs a Publisher reporting its progress to the given listener in addition to the
+	 * metrics of the report.
+	 *
+	 * @param config the publisher configuration
+	 * @param listener the listener receiving the timings and page outcomes
+	 */
+	public Publisher(final Configuration config, final PublishListener listener) {
 		this.config = config;
 		parser = new AntoraParser(config);
-		client = new ConfluenceClient(config, parser, new ConfluenceTransformer());
+		client = new ConfluenceClient(config, parser, new ConfluenceTransformer(), new Listeners(metrics, listener));
 	}
 
 	/**
 	 * Publishes content to all configured Confluence spaces.
 	 *
-	 * Iterates through all mappers in the configuration and publishes content to each
-	 * specified space.
+	 * All mappers are published concurrently. The number of pages published at the same
+	 * time is limited by the configured concurrency across all mappers. A failing mapper does
+	 * not stop the others. Mappers sharing the same sources render every page only once.
+	 *
+	 * @return the summary of the run with one report per mapper and the metrics of the run
+	 */
+	public PublishReport publish() {
+		return run(config.getMappers(), this::publish);
+	}
+
+	/**
+	 * Publishes all pages and then watches the sources of the mappers until the thread is
+	 * interrupted.
+	 *
+	 * Each burst of changed files is mapped to the pages they are the source of, and only
+	 * these pages are published again. All pages of a mapper are published again if its
+	 * navigation changed, or if a changed file is not the source of a page, like an image.
+	 * The connections, the index of the remote pages and the publish state of each mapper
+	 * are kept between the runs, so a run of a few changed pages costs a few requests.
+	 *
+	 * @param debounce the time without further changes before the changed pages are published
+	 * @param listener receives the report of every run, starting with the initial one
+	 * @throws IOException if the sources could not be watched
+	 * @throws InterruptedException if the thread was interrupted, which ends watching
 	 */
-	public void publish() {
+	public void watch(final Duration debounce, final Consumer<PublishReport> listener)
+			throws IOException, InterruptedException {
+		try (var watcher = new SourceWatcher(config.getMappers(), debounce)) {
+			listener.accept(run(config.getMappers(), (mapper, report) -> republish(mapper, null, report)));
+			while (!Thread.currentThread().isInterrupted()) {
+				final var changes = watcher.take();
+				listener.accept(run(changes.keySet(),
+						(mapper, report) -> republish(mapper, changes.get(mapper), report)));
+			}
+		} finally {
+			watched.clear();
+		}
+	}
 
-		config.getMappers().forEach(this::publish);
+	/**
+	 * Runs an action for each of the given mappers concurrently and collects their reports.
+	 *
+	 * @param mappers the mappers
+	 * @param action publishes the pages of a mapper
+	 * @return the summary of the run with one report per mapper and the metrics of the run
+	 */
+	private PublishReport run(final Collection<Mapper> mappers, final BiConsumer<Mapper, MapperReport> action) {
+		final var report = new PublishReport();
+		final List<MapperReport> reports = new ArrayList<>();
+		metrics.reset();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (final Mapper mapper : mappers) {
+				final var mapperReport = new MapperReport(mapper.getSpaceKey());
+				reports.add(mapperReport);
+				executor.submit(() -> action.accept(mapper, mapperReport));
+			}
+		} finally {
+			client.clearRenderCache();
+		}
+		reports.forEach(report::add);
+		report.setMetrics(metrics.snapshot());
+		return report;
 	}
 
 	/**
 	 * Publishes content to a specific Confluence space using the given mapper.
 	 *
 	 * Parses the source content, logs the page hierarchy, and updates pages in the
-	 * target Confluence space. Any errors are logged without stopping the process.
+	 * target Confluence space. Any errors are logged and recorded in the report without
+	 * stopping the process.
 	 *
 	 * @param mapper the space mapper defining the target space and source path
+	 * @param report the report receiving the outcome of the mapper
+	 */
+	protected void publish(final Mapper mapper, final MapperReport report) {
+		final var start = System.nanoTime();
+		try {
+			final var tree = parser.resolvePages(Path.of(mapper.getPath()));
+			tree.getRoots().forEach(p -> dump(p, 1));
+			client.updatePages(mapper, tree, report);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			report.setError(e);
+		} catch (final Exception e) {
+			log.error("Failed to publish to space {}", mapper.getSpaceKey(), e);
+			report.setError(e);
+		} finally {
+			report.setDuration(Duration.ofNanos(System.nanoTime() - start));
+		}
+
+	}
+
+	/**
+	 * Publishes the changed pages of a mapper within the session kept from the previous run.
+	 *
+	 * @param mapper the space mapper
+	 * @param changed the changed files, or null to publish all pages
+	 * @param report the report receiving the outcome of the mapper
 	 */
-	protected void publish(final Mapper mapper) {
+	private void republish(final Mapper mapper, final Set<Path> changed, final MapperReport report) {
+		final var start = System.nanoTime();
 		try {
-			final var pages = parser.resolvePages(Path.of(mapper.getPath()));
-			pages.forEach(p -> dump(p, 1));
-			client.updatePages(mapper, pages);
+			final var previous = watched.get(mapper);
+			final var session = previous != null ? previous.session() : client.openSession(mapper);
+			final var tree = parser.resolvePages(Path.of(mapper.getPath()));
+			var all = changed == null || previous == null || previous.tree() == null;
+			if (!all && !tree.hasSameStructure(previous.tree())) {
+				log.info("Navigation of space {} changed, republish all pages", mapper.getSpaceKey());
+				all = true;
+			}
+			final Set<Page> pages = new LinkedHashSet<>();
+			for (final Path file : all ? Set.<Path>of() : changed) {
+				final var page = tree.findBySource(file);
+				if (page.isEmpty() || !Files.isRegularFile(file)) {
+					log.info("{} is not the source of a page, republish all pages", file);
+					all = true;
+					break;
+				}
+				pages.add(page.get());
+			}
+			if (!all) {
+				log.info("Republish {} changed pages of space {}", pages.size(), mapper.getSpaceKey());
+				all = !client.updatePages(session, pages, report);
+			}
+			if (all) {
+				tree.getRoots().forEach(p -> dump(p, 1));
+				client.updatePages(session, tree, report);
+			}
+			// failed pages are retried by publishing all pages with the next change
+			watched.put(mapper, new Watched(session, report.getFailed() == 0 ? tree : null));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			report.setError(e);
 		} catch (final Exception e) {
 			log.error("Failed to publish to space {}", mapper.getSpaceKey(), e);
+			report.setError(e);
+		} finally {
+			report.setDuration(Duration.ofNanos(System.nanoTime() - start));
 		}
+	}
 
+	/**
+	 * Releases the connections to Confluence.
+	 *
+	 * @throws IOException if the connections could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		client.close();
 	}
 
 	/**
@@ -102,4 +258,55 @@ public class Publisher {
 		log.info("{}> {}", StringUtils.repeat('-', depth), page.getTitle());
 		page.getChildren().forEach(p -> dump(p, depth + 1));
 	}
+
+	/**
+	 * The state of a watched mapper kept between the runs.
+	 *
+	 * @param session the remote state of the mapper
+	 * @param tree the pages of the mapper published last, or null if some of them failed
+	 */
+	private record Watched(ConfluenceClient.Session session, PageTree tree) {
+	}
+
+	/**
+	 * Forwards all events to the metrics of the run and the listener of the caller.
+	 */
+	private record Listeners(PublishListener metrics, PublishListener listener) implements PublishListener {
+
+		@Override
+		public void parsed(final Page page, final Duration duration) {
+			metrics.parsed(page, duration);
+			listener.parsed(page, duration);
+		}
+
+		@Override
+		public void transformed(final Page page, final Duration duration) {
+			metrics.transformed(page, duration);
+			listener.transformed(page, duration);
+		}
+
+		@Override
+		public void requested(final String operation, final int status, final Duration duration) {
+			metrics.requested(operation, status, duration);
+			listener.requested(operation, status, duration);
+		}
+
+		@Override
+		public void retrying(final String operation, final int status, final int attempt) {
+			metrics.retrying(operation, status, attempt);
+			listener.retrying(operation, status, attempt);
+		}
+
+		@Override
+		public void uploaded(final String pageId, final int files, final long bytes) {
+			metrics.uploaded(pageId, files, bytes);
+			listener.uploaded(pageId, files, bytes);
+		}
+
+		@Override
+		public void published(final Page page, final Outcome outcome) {
+			metrics.published(page, outcome);
+			listener.published(page, outcome);
+		}
+	}
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.atlassian.wiki.rest.ApiException;
+import net.atlassian.wiki.rest.v2.model.PageBulk;
+
+/**
+ * Index of the pages existing in a Confluence space.
+ *
+ * The index is built lazily from the listing of the space on the first lookup, so runs
+ * that resolve all pages from the {@link PublishState} never read the space. It is kept up
+ * to date with the pages created during the run. Lookups by title are constant time.
+ * Confluence enforces unique page titles within a space, so the title is a sufficient key.
+ *
+ * A scoped index never lists the space. It loads the children of a parent page on the
+ * first lookup below that parent, one level at a time, and finds other pages with a single
+ * query by title. The cost of the lookups then follows the size of the published subtree
+ * instead of the size of the space.
+ *
+ * @author Andreas Huber
+ */
+public class RemotePages {
+
+	/** Loads the existing pages into the index, null for a scoped index. */
+	private final Loader loader;
+
+	/** Finds a single page of a scoped index by its title. */
+	private final Finder finder;
+
+	/** Loads the children of a parent page into a scoped index. */
+	private final ChildLoader childLoader;
+
+	/** The loading of the children of a scoped index by the ID of the parent page. */
+	private final Map<String, FutureTask<Void>> levels = new ConcurrentHashMap<>();
+
+	/** Whether the existing pages have been loaded. */
+	private volatile boolean loaded;
+
+	/**
+	 * Guards the loading of the existing pages. A lock instead of a monitor, so virtual
+	 * threads waiting for the listing do not pin their carrier threads.
+	 */
+	private final ReentrantLock loading = new ReentrantLock();
+
+	/** Pages keyed by their title. */
+	private final Map<String, PageBulk> byTitle = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs an index which is filled by the given loader on first use.
+	 *
+	 * @param loader the loader of the existing pages
+	 */
+	public RemotePages(final Loader loader) {
+		this.loader = loader;
+		finder = null;
+		childLoader = null;
+	}
+
+	/**
+	 * Constructs a scoped index which loads the children of a page on the first lookup below
+	 * it and finds other pages by title.
+	 *
+	 * @param finder the lookup of a single page by title
+	 * @param childLoader the loader of the children of a page
+	 */
+	public RemotePages(final Finder finder, final ChildLoader childLoader) {
+		loader = null;
+		this.finder = finder;
+		this.childLoader = childLoader;
+	}
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public RemotePages() {
+		this(index -> {
+		});
+	}
+
+	/**
+	 * Adds a page to the index.
+	 *
+	 * @param page the remote page
+	 */
+	public void add(final PageBulk page) {
+		if (page.getTitle() != null) {
+			byTitle.put(page.getTitle(), page);
+		}
+	}
+
+	/**
+	 * Finds a page by its title.
+	 *
+	 * @param title the page title
+	 * @return the page, or empty if no page with this title exists
+	 * @throws ApiException if the existing pages could not be loaded
+	 * @throws InterruptedException if the thread was interrupted while loading
+	 */
+	public Optional<PageBulk> findByTitle(final String title) throws ApiException, InterruptedException {
+		if (title == null) {
+			return Optional.empty();
+		}
+		if (loader == null && !byTitle.containsKey(title)) {
+			finder.find(title).ifPresent(this::add);
+		}
+		ensureLoaded();
+		return Optional.ofNullable(byTitle.get(title));
+	}
+
+	/**
+	 * Finds a page by its title, which is expected below the given parent page. A scoped
+	 * index only looks among the children of the parent, or for the title in the whole space
+	 * if there is no parent.
+	 *
+	 * @param parentId the ID of the expected parent page, or null
+	 * @param title the page title
+	 * @return the page, or empty if no page with this title is known
+	 * @throws ApiException if the existing pages could not be loaded
+	 * @throws InterruptedException if the thread was interrupted while loading
+	 */
+	public Optional<PageBulk> find(final String parentId, final String title)
+			throws ApiException, InterruptedException {
+		if (loader != null || parentId == null) {
+			return findByTitle(title);
+		}
+		ensureLevel(parentId);
+		return Optional.ofNullable(title).map(byTitle::get);
+	}
+
+	/**
+	 * Returns the number of indexed pages.
+	 *
+	 * @return the number of pages
+	 */
+	public int size() {
+		return byTitle.size();
+	}
+
+	private void ensureLoaded() throws ApiException, InterruptedException {
+		if (!loaded && loader != null) {
+			loading.lockInterruptibly();
+			try {
+				if (!loaded) {
+					loader.load(this);
+					loaded = true;
+				}
+			} finally {
+				loading.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Loads the children of a parent once. Concurrent lookups below the same parent wait for
+	 * the first one, lookups below other parents proceed in parallel. A failed load is
+	 * repeated by the next lookup.
+	 */
+	private void ensureLevel(final String parentId) throws ApiException, InterruptedException {
+		final var task = new FutureTask<Void>(() -> {
+			childLoader.load(parentId).forEach(this::add);
+			return null;
+		});
+		final var existing = levels.putIfAbsent(parentId, task);
+		final var level = existing != null ? existing : task;
+		if (existing == null) {
+			task.run();
+		}
+		try {
+			level.get();
+		} catch (final ExecutionException e) {
+			levels.remove(parentId, level);
+			if (e.getCause() instanceof final ApiException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof final InterruptedException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException("Failed to load the children of " + parentId, e.getCause());
+		}
+	}
+
+	/**
+	 * Loads the existing pages of a space into an index.
+	 */
+	@FunctionalInterface
+	public interface Loader {
+
+		/**
+		 * Adds the existing pages to the index.
+		 *
+		 * @param index the index to fill
+		 * @throws ApiException if the pages could not be listed
+		 * @throws InterruptedException if the thread was interrupted while listing
+		 */
+		void load(RemotePages index) throws ApiException, InterruptedException;
+	}
+
+	/**
+	 * Finds a single page of a space by its title.
+	 */
+	@FunctionalInterface
+	public interface Finder {
+
+		/**
+		 * Finds the page with the given title.
+		 *
+		 * @param title the page title
+		 * @return the page, or empty if the space has no page with this title
+		 * @throws ApiException if the page could not be looked up
+		 * @throws InterruptedException if the thread was interrupted during the lookup
+		 */
+		Optional<PageBulk> find(String title) throws ApiException, InterruptedException;
+	}
+
+	/**
+	 * Loads the children of a page.
+	 */
+	@FunctionalInterface
+	public interface ChildLoader {
+
+		/**
+		 * Lists the current child pages of a page.
+		 *
+		 * @param parentId the ID of the parent page
+		 * @return the child pages
+		 * @throws ApiException if the children could not be listed
+		 * @throws InterruptedException if the thread was interrupted while listing
+		 */
+		List<PageBulk> load(String parentId) throws ApiException, InterruptedException;
+	}
+}
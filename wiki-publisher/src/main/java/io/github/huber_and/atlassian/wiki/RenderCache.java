@@ -0,0 +1,197 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.github.huber_and.atlassian.wiki.parser.Parser;
+import io.github.huber_and.atlassian.wiki.transformer.Transformer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Renders pages and caches the results by their source file.
+ *
+ * The cache is keyed by the absolute source path together with the size and the
+ * modification time of the file, so several mappers publishing the same sources parse and
+ * transform each page only once. Concurrent requests for the same source wait for the
+ * first one. The results are softly referenced and may be reclaimed under memory pressure,
+ * in which case the page is rendered again. Failures are not cached.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class RenderCache {
+
+	/** Parser for loading the content of the pages. */
+	private final Parser parser;
+
+	/** Transformer for converting the content to storage format. */
+	private final Transformer transformer;
+
+	/** Receives the time spent parsing and transforming each page. */
+	private final PublishListener listener;
+
+	/** The rendered results by source file. */
+	private final Map<Key, SoftReference<CompletableFuture<Transformer.Result>>> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs an empty cache.
+	 *
+	 * @param parser the content parser
+	 * @param transformer the content transformer
+	 * @param listener the listener receiving the parse and transform times
+	 */
+	public RenderCache(final Parser parser, final Transformer transformer, final PublishListener listener) {
+		this.parser = parser;
+		this.transformer = transformer;
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the transformed content of the given page, rendering it if the source is not
+	 * cached or has changed.
+	 *
+	 * @param page the page with a source
+	 * @return the transformed content
+	 * @throws InterruptedException if the thread was interrupted while waiting for another
+	 *         thread rendering the same source
+	 * @throws Exception if the page could not be parsed or transformed
+	 */
+	public Transformer.Result render(final Page page) throws Exception {
+		final var key = Key.of(page.getSource());
+		final var created = new CompletableFuture<Transformer.Result>();
+		final var reference = entries.compute(key,
+				(k, existing) -> existing != null && existing.get() != null ? existing : new SoftReference<>(created));
+		var future = reference.get();
+		if (future == null) {
+			// reclaimed right after the lookup, render without caching
+			future = created;
+		}
+		if (future == created) {
+			try {
+				final var start = System.nanoTime();
+				final var content = parser.loadContent(page);
+				final var parsed = System.nanoTime();
+				listener.parsed(page, Duration.ofNanos(parsed - start));
+				final var result = transformer.transform(page, content);
+				listener.transformed(page, Duration.ofNanos(System.nanoTime() - parsed));
+				created.complete(result);
+			} catch (final Exception e) {
+				entries.remove(key, reference);
+				created.completeExceptionally(e);
+			}
+		} else {
+			log.debug("Page {} rendered from cache", page.getTitle());
+		}
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			throw e.getCause() instanceof final Exception cause ? cause : e;
+		}
+	}
+
+	/**
+	 * Renders the given pages and all their children into the cache.
+	 *
+	 * Every subtree is a task of the pool, so idle workers steal the subtrees of busy ones.
+	 * Pages which fail are skipped here and fail again when their content is taken.
+	 *
+	 * @param pages the pages to render
+	 * @param pool the pool rendering the pages
+	 */
+	public void preRender(final List<Page> pages, final ForkJoinPool pool) {
+		final var start = System.nanoTime();
+		pool.invoke(new RenderTask(pages));
+		log.info("Rendered pages in {} ms", (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Renders a list of sibling pages and their subtrees. Lists of several pages are split in
+	 * halves, a single page forks its children while rendering itself.
+	 */
+	private class RenderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The sibling pages. */
+		private final transient List<Page> pages;
+
+		RenderTask(final List<Page> pages) {
+			this.pages = pages;
+		}
+
+		@Override
+		protected void compute() {
+			if (pages.size() > 1) {
+				final var half = pages.size() / 2;
+				invokeAll(new RenderTask(pages.subList(0, half)), new RenderTask(pages.subList(half, pages.size())));
+				return;
+			}
+			for (final Page page : pages) {
+				final var children = page.getChildren().isEmpty() ? null : new RenderTask(page.getChildren()).fork();
+				if (page.getSource() != null) {
+					try {
+						render(page);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} catch (final Exception e) {
+						log.debug("Failed to pre-render page {}", page.getTitle(), e);
+					}
+				}
+				if (children != null) {
+					children.join();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Identifies a version of a source file.
+	 *
+	 * @param path the absolute path of the file
+	 * @param size the size of the file
+	 * @param modified the last modification time of the file
+	 */
+	private record Key(Path path, long size, FileTime modified) {
+
+		static Key of(final Path source) throws IOException {
+			final var path = source.toAbsolutePath().normalize();
+			final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return new Key(path, attributes.size(), attributes.lastModifiedTime());
+		}
+	}
+}
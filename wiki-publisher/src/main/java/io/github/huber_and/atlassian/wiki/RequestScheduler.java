@@ -0,0 +1,431 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import lombok.extern.slf4j.Slf4j;
+import net.atlassian.wiki.rest.ApiException;
+
+/**
+ * Schedules the requests to Confluence within the rate limits of the server.
+ *
+ * All API calls pass through this scheduler, which combines:
+ * <ul>
+ *   <li>a token bucket limiting the request rate, if configured</li>
+ *   <li>an adaptive limit of requests in flight, halved when the server answers with 429 or
+ *   503 and slowly increased again with every successful request</li>
+ *   <li>a global pause honouring the {@code Retry-After} and {@code X-RateLimit-*} headers</li>
+ *   <li>retries with jittered exponential backoff for throttled and transient failures</li>
+ * </ul>
+ * Calls which are not idempotent are only retried when the server rejected them with 429,
+ * as the request was not processed in that case.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class RequestScheduler {
+
+	/** Header with the number of seconds or the date after which the request may be retried. */
+	private static final String RETRY_AFTER = "Retry-After";
+
+	/** Header with the number of requests remaining in the current rate limit window. */
+	private static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+
+	/** Header with the time the current rate limit window resets. */
+	private static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+	/** Header signalling that the rate limit is almost exhausted. */
+	private static final String RATE_LIMIT_NEAR_LIMIT = "X-RateLimit-NearLimit";
+
+	/** The maximum number of retries of a single call. */
+	private final int maxRetries;
+
+	/** The initial delay before retrying a call. */
+	private final Duration initialBackoff;
+
+	/** The maximum delay before retrying a call. */
+	private final Duration maxBackoff;
+
+	/** The maximum number of requests in flight. */
+	private final int maxConcurrency;
+
+	/** The number of tokens added to the bucket per second, 0 if the rate is not limited. */
+	private final double rate;
+
+	/** Receives the latency of every call and the retries. */
+	private final PublishListener listener;
+
+	/** Guards the mutable state of the scheduler. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Signalled when a request completes or the limit is raised. */
+	private final Condition available = lock.newCondition();
+
+	/** The current limit of requests in flight. */
+	private double limit;
+
+	/** The number of requests in flight. */
+	private int inFlight;
+
+	/** The tokens currently available in the bucket. */
+	private double tokens;
+
+	/** The time of the last refill of the bucket in nanoseconds. */
+	private long refilled = System.nanoTime();
+
+	/** The time until which no request may be sent in nanoseconds. */
+	private long pausedUntil = System.nanoTime();
+
+	/**
+	 * Constructs a scheduler with the given connection settings.
+	 *
+	 * @param connection the connection settings
+	 * @param listener the listener receiving the latency of the calls
+	 */
+	public RequestScheduler(final Configuration.Connection connection, final PublishListener listener) {
+		this.listener = listener;
+		maxRetries = connection.getMaxRetries();
+		initialBackoff = Duration.ofMillis(connection.getInitialBackoff());
+		maxBackoff = Duration.ofMillis(connection.getMaxBackoff());
+		maxConcurrency = Math.max(1, connection.getMaxConnectionsPerRoute());
+		rate = Math.max(0, connection.getRequestsPerSecond());
+		limit = maxConcurrency;
+		tokens = Math.max(1, rate);
+	}
+
+	/**
+	 * Executes an API call, retrying it if it is throttled or fails transiently.
+	 *
+	 * @param <T> the result type
+	 * @param operation the name of the operation, used for logging
+	 * @param idempotent whether the call may be repeated safely after a transient failure
+	 * @param call the API call
+	 * @return the result of the call
+	 * @throws ApiException if the call failed and is not retried
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public <T> T execute(final String operation, final boolean idempotent, final Call<T> call)
+			throws ApiException, InterruptedException {
+		var attempt = 0;
+		while (true) {
+			acquire();
+			ApiException failure;
+			final var start = System.nanoTime();
+			try {
+				final var result = call.execute();
+				listener.requested(operation, HttpStatus.SC_OK, Duration.ofNanos(System.nanoTime() - start));
+				onSuccess();
+				return result;
+			} catch (final ApiException e) {
+				listener.requested(operation, e.getCode(), Duration.ofNanos(System.nanoTime() - start));
+				failure = e;
+				onFailure(e.getCode());
+			} finally {
+				release();
+			}
+			attempt++;
+			if (!isRetryable(failure.getCode(), idempotent) || attempt > maxRetries) {
+				throw failure;
+			}
+			listener.retrying(operation, failure.getCode(), attempt);
+			final var delay = delay(attempt, failure.getResponseHeaders());
+			log.info("{} failed with status {}, retry {} of {} in {} ms", operation, failure.getCode(), attempt,
+					maxRetries, delay.toMillis());
+			Thread.sleep(delay);
+		}
+	}
+
+	/**
+	 * Executes an API call without result, retrying it if it is throttled or fails transiently.
+	 *
+	 * @param operation the name of the operation, used for logging
+	 * @param idempotent whether the call may be repeated safely after a transient failure
+	 * @param call the API call
+	 * @throws ApiException if the call failed and is not retried
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public void run(final String operation, final boolean idempotent, final VoidCall call)
+			throws ApiException, InterruptedException {
+		execute(operation, idempotent, () -> {
+			call.execute();
+			return null;
+		});
+	}
+
+	/**
+	 * Observes the rate limit headers of every response received from Confluence.
+	 *
+	 * Registered as response interceptor of the HTTP client, so the headers of successful
+	 * responses are seen as well. When the rate limit window is exhausted, all requests are
+	 * paused until it resets.
+	 *
+	 * @param response the HTTP response
+	 * @param entity the response entity details
+	 * @param context the HTTP context
+	 */
+	public void observe(final HttpResponse response, final EntityDetails entity, final HttpContext context) {
+		final var nearLimit = response.getFirstHeader(RATE_LIMIT_NEAR_LIMIT);
+		if (nearLimit != null && Boolean.parseBoolean(nearLimit.getValue())) {
+			decrease(0.9);
+		}
+		final var remaining = response.getFirstHeader(RATE_LIMIT_REMAINING);
+		final var reset = response.getFirstHeader(RATE_LIMIT_RESET);
+		if (remaining != null && reset != null && "0".equals(remaining.getValue().trim())) {
+			final var wait = untilDate(reset.getValue());
+			if (wait != null) {
+				pause(wait);
+			}
+		}
+		final var retryAfter = response.getFirstHeader(RETRY_AFTER);
+		if (retryAfter != null && response.getCode() == HttpStatus.SC_TOO_MANY_REQUESTS) {
+			final var wait = retryAfter(retryAfter.getValue());
+			if (wait != null) {
+				pause(wait);
+			}
+		}
+	}
+
+	/**
+	 * Waits until a request may be sent and takes a slot for it.
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	private void acquire() throws InterruptedException {
+		lock.lock();
+		try {
+			while (true) {
+				final var now = System.nanoTime();
+				if (pausedUntil - now > 0) {
+					available.awaitNanos(pausedUntil - now);
+				} else if (inFlight >= Math.max(1, (int) limit)) {
+					available.await();
+				} else if (rate > 0 && !takeToken(now)) {
+					available.awaitNanos((long) ((1 - tokens) / rate * 1_000_000_000L));
+				} else {
+					inFlight++;
+					return;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean takeToken(final long now) {
+		tokens = Math.min(Math.max(1, rate), tokens + (now - refilled) * rate / 1_000_000_000L);
+		refilled = now;
+		if (tokens >= 1) {
+			tokens--;
+			return true;
+		}
+		return false;
+	}
+
+	private void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void onSuccess() {
+		lock.lock();
+		try {
+			if (limit < maxConcurrency) {
+				limit = Math.min(maxConcurrency, limit + 1 / limit);
+				available.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void onFailure(final int status) {
+		if (status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+			decrease(0.5);
+		}
+	}
+
+	private void decrease(final double factor) {
+		lock.lock();
+		try {
+			final var decreased = Math.max(1, limit * factor);
+			if ((int) decreased < (int) limit) {
+				log.info("Reduce concurrent requests to {}", (int) decreased);
+			}
+			limit = decreased;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void pause(final Duration duration) {
+		lock.lock();
+		try {
+			final var until = System.nanoTime() + duration.toNanos();
+			if (until - pausedUntil > 0) {
+				pausedUntil = until;
+				log.info("Rate limit reached, pause requests for {} ms", duration.toMillis());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Decides whether a failed call is retried.
+	 *
+	 * @param status the HTTP status, 0 if no response was received
+	 * @param idempotent whether the call may be repeated safely
+	 * @return true if the call should be retried
+	 */
+	private boolean isRetryable(final int status, final boolean idempotent) {
+		if (status == HttpStatus.SC_TOO_MANY_REQUESTS) {
+			return true;
+		}
+		return idempotent && (status == 0 || status == HttpStatus.SC_BAD_GATEWAY
+				|| status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT
+				|| status == HttpStatus.SC_INTERNAL_SERVER_ERROR);
+	}
+
+	/**
+	 * Computes the delay before the next attempt.
+	 *
+	 * A delay requested by the server is honoured. Otherwise the delay grows exponentially
+	 * with the number of attempts and is jittered to spread concurrent retries.
+	 *
+	 * @param attempt the number of the retry, starting with 1
+	 * @param headers the headers of the failed response, may be null
+	 * @return the delay
+	 */
+	private Duration delay(final int attempt, final Map<String, List<String>> headers) {
+		final var retryAfter = header(headers, RETRY_AFTER);
+		if (retryAfter != null) {
+			final var delay = retryAfter(retryAfter);
+			if (delay != null) {
+				return delay;
+			}
+		}
+		final var reset = header(headers, RATE_LIMIT_RESET);
+		if (reset != null && "0".equals(header(headers, RATE_LIMIT_REMAINING))) {
+			final var delay = untilDate(reset);
+			if (delay != null) {
+				return delay;
+			}
+		}
+		final var exponential = initialBackoff.toMillis() << Math.min(attempt - 1, 20);
+		final var capped = Math.min(maxBackoff.toMillis(), exponential);
+		return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+	}
+
+	private static String header(final Map<String, List<String>> headers, final String name) {
+		if (headers == null) {
+			return null;
+		}
+		for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+				return header.getValue().getFirst().trim();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses a {@code Retry-After} value given in seconds or as HTTP date.
+	 *
+	 * @param value the header value
+	 * @return the delay, or null if the value could not be parsed
+	 */
+	private static Duration retryAfter(final String value) {
+		try {
+			return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+		} catch (final NumberFormatException e) {
+			try {
+				return positive(Duration.between(ZonedDateTime.now(),
+						ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)));
+			} catch (final DateTimeParseException ex) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Parses a {@code X-RateLimit-Reset} value given as ISO-8601 timestamp.
+	 *
+	 * @param value the header value
+	 * @return the delay until the timestamp, or null if the value could not be parsed
+	 */
+	private static Duration untilDate(final String value) {
+		try {
+			return positive(Duration.between(OffsetDateTime.now(), OffsetDateTime.parse(value.trim())));
+		} catch (final DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	private static Duration positive(final Duration duration) {
+		return duration.isNegative() ? Duration.ZERO : duration;
+	}
+
+	/**
+	 * An API call returning a result.
+	 *
+	 * @param <T> the result type
+	 */
+	@FunctionalInterface
+	public interface Call<T> {
+
+		/**
+		 * Executes the call.
+		 *
+		 * @return the result
+		 * @throws ApiException if the call failed
+		 */
+		T execute() throws ApiException;
+	}
+
+	/**
+	 * An API call without result.
+	 */
+	@FunctionalInterface
+	public interface VoidCall {
+
+		/**
+		 * Executes the call.
+		 *
+		 * @throws ApiException if the call failed
+		 */
+		void execute() throws ApiException;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.github.huber_and.atlassian.wiki.Configuration.Mapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Watches the source directories of the mappers for changed files.
+ *
+ * All directories below the path of each mapper are registered with a
+ * {@link WatchService}, including directories created later. Changes are collected until
+ * no further change arrives within the debounce delay, so a site generator rewriting many
+ * files results in a single set of changes. Changes to directories themselves are ignored.
+ * If the watch service lost events, the path of the mapper is reported as changed, which is
+ * the source of no page. A deleted path of a mapper, e.g. an output directory recreated by
+ * the site generator, is checked for with every debounce delay and watched again as soon
+ * as it exists, again reported as changed.
+ *
+ * @author Andreas Huber
+ */
+@Slf4j
+public class SourceWatcher implements AutoCloseable {
+
+	/** The watch service of the default file system. */
+	private final WatchService service;
+
+	/** The watched directories by their watch key. */
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+
+	/** The mappers by their absolute source path. */
+	private final Map<Path, Set<Mapper>> mappers = new LinkedHashMap<>();
+
+	/** The deleted source paths, watched again once they exist. */
+	private final Set<Path> missing = new LinkedHashSet<>();
+
+	/** The time without further changes before the changes are reported. */
+	private final Duration debounce;
+
+	/**
+	 * Starts watching the source paths of the given mappers.
+	 *
+	 * @param mappers the mappers to watch
+	 * @param debounce the time without further changes before the changes are reported
+	 * @throws IOException if a directory could not be registered
+	 */
+	public SourceWatcher(final Collection<Mapper> mappers, final Duration debounce) throws IOException {
+		this.debounce = debounce;
+		service = FileSystems.getDefault().newWatchService();
+		for (final Mapper mapper : mappers) {
+			final var root = Path.of(mapper.getPath()).toAbsolutePath().normalize();
+			if (!this.mappers.containsKey(root)) {
+				register(root);
+			}
+			this.mappers.computeIfAbsent(root, k -> new LinkedHashSet<>()).add(mapper);
+		}
+	}
+
+	/**
+	 * Waits for the next burst of changes.
+	 *
+	 * @return the changed files by mapper, with at least one entry
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	public Map<Mapper, Set<Path>> take() throws InterruptedException {
+		final Map<Mapper, Set<Path>> changes = new LinkedHashMap<>();
+		var quiet = false;
+		// if only directories changed, wait for the next change
+		while (changes.isEmpty() || !quiet) {
+			final var key = changes.isEmpty() && missing.isEmpty() ? service.take()
+					: service.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+			if (key != null) {
+				collect(key, changes);
+			}
+			restore(changes);
+			quiet = key == null;
+		}
+		log.info("Changed files: {}", changes);
+		return changes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+
+	private void collect(final WatchKey key, final Map<Mapper, Set<Path>> changes) {
+		final var directory = directories.get(key);
+		for (final var event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				log.warn("Lost file system events, republish all pages");
+				mappers.forEach((root, list) -> list
+						.forEach(m -> changes.computeIfAbsent(m, k -> new LinkedHashSet<>()).add(root)));
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			final var path = directory.resolve((Path) event.context());
+			if (Files.isDirectory(path)) {
+				if (event.kind() == ENTRY_CREATE) {
+					try {
+						register(path);
+					} catch (final IOException e) {
+						log.warn("Failed to watch directory {}", path, e);
+					}
+				}
+				continue;
+			}
+			mappers.forEach((root, list) -> {
+				if (path.startsWith(root)) {
+					list.forEach(m -> changes.computeIfAbsent(m, k -> new LinkedHashSet<>()).add(path));
+				}
+			});
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+			if (mappers.containsKey(directory)) {
+				log.warn("Source path {} was deleted, waiting for it to be created again", directory);
+				missing.add(directory);
+			}
+		}
+	}
+
+	private void restore(final Map<Mapper, Set<Path>> changes) {
+		for (final var iterator = missing.iterator(); iterator.hasNext();) {
+			final var root = iterator.next();
+			if (Files.isDirectory(root)) {
+				try {
+					register(root);
+					iterator.remove();
+					log.info("Watching source path {} again", root);
+					// files written before the registration sent no events
+					mappers.get(root).forEach(m -> changes.computeIfAbsent(m, k -> new LinkedHashSet<>()).add(root));
+				} catch (final IOException e) {
+					log.warn("Failed to watch directory {}", root, e);
+				}
+			}
+		}
+	}
+
+	private void register(final Path root) throws IOException {
+		try (var tree = Files.walk(root)) {
+			for (final Path directory : tree.filter(Files::isDirectory).toList()) {
+				directories.put(directory.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+			}
+		}
+	}
+}
@@ -17,8 +17,6 @@ package io.github.huber_and.atlassian.wiki.parser;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jsoup.Jsoup;
@@ -28,6 +26,7 @@ import org.jsoup.nodes.Entities;
 
 import io.github.huber_and.atlassian.wiki.Configuration;
 import io.github.huber_and.atlassian.wiki.Page;
+import io.github.huber_and.atlassian.wiki.PageTree;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -38,6 +37,10 @@ import lombok.extern.slf4j.Slf4j;
  * extracting page hierarchies from the Antora HTML structure by parsing navigation menus
  * and source files.
  *
+ * Only the navigation menu of the index and the article of each page are parsed. They are
+ * extracted with an {@link ElementExtractor}, which stops reading a file once the element
+ * is complete. Files without a matching element are parsed as a whole.
+ *
  * @author Andreas Huber
  */
 @Slf4j
@@ -62,21 +65,21 @@ public class AntoraParser implements Parser {
 	 * constructing a tree of Page objects based on the menu hierarchy.
 	 *
 	 * @param root the root path of the Antora documentation
-	 * @return a list of root-level pages from the navigation structure
+	 * @return the tree of pages from the navigation structure
 	 * @throws IOException if an error occurs while reading the index.html file
 	 */
 	@Override
-	public List<Page> resolvePages(final Path root) throws IOException {
+	public PageTree resolvePages(final Path root) throws IOException {
 
 		final var index = root.resolve("index.html");
-		final var doc = load(index);
+		final var doc = load(index, null, "data-panel=\"menu\"");
 
 		final var menus = doc.getElementsByAttributeValue("data-panel", "menu");
 		log.debug("Found {} menu elements", menus.size());
 		final var menu = menus.getFirst();
 
 		final var path = new Page[10];
-		final List<Page> roots = new ArrayList<>();
+		final var tree = new PageTree();
 
 		for (final Element child : menu.getElementsByTag("a")) {
 			if (!child.parent().hasAttr("data-depth")) {
@@ -88,15 +91,12 @@ public class AntoraParser implements Parser {
 			if (StringUtils.isNotBlank(href)) {
 				source = root.resolve(href);
 			}
-			final var item = new Page(child.text(), source, path[depth - 1]);
+			final var item = tree.add(child.text(), source, path[depth - 1]);
 			path[depth] = item;
-			if (item.getParent() == null) {
-				roots.add(item);
-			}
 			log.info("NavItem {}", item);
 
 		}
-		return roots;
+		return tree;
 	}
 
 	/**
@@ -105,12 +105,29 @@ public class AntoraParser implements Parser {
 	@Override
 	public Element loadContent(final Page page) throws IOException {
 		log.info("Load page from {}", page.getSource());
-		final var doc = load(page.getSource());
+		final var doc = load(page.getSource(), "article", "class=\"doc\"");
 		return doc.selectFirst("article.doc");
 	}
 
-	private Document load(final Path file) throws IOException {
-		final var doc = Jsoup.parse(file, "UTF-8", "", org.jsoup.parser.Parser.xmlParser());
+	/**
+	 * Parses the element of the file identified by the given tag and attribute markup, or
+	 * the whole file if the element is not found.
+	 *
+	 * @param file the HTML file
+	 * @param tag the tag name of the element, or null for any tag
+	 * @param attribute the attribute markup within the start tag
+	 * @return the parsed document
+	 * @throws IOException if the file could not be read
+	 */
+	private Document load(final Path file, final String tag, final String attribute) throws IOException {
+		final var fragment = ElementExtractor.extract(file, tag, attribute);
+		Document doc;
+		if (fragment != null) {
+			doc = Jsoup.parse(fragment, "", org.jsoup.parser.Parser.xmlParser());
+		} else {
+			log.debug("No element with {} found in {}, parse the whole file", attribute, file);
+			doc = Jsoup.parse(file, "UTF-8", "", org.jsoup.parser.Parser.xmlParser());
+		}
 		doc.outputSettings().prettyPrint(false);// makes html() preserve linebreaks and spacing
 		doc.outputSettings().escapeMode(Entities.EscapeMode.xhtml); // This will ensure xhtml validity regarding
 																	// entities
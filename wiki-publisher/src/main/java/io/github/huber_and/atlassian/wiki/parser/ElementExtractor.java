@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Extracts the markup of a single element from a file without reading all of it.
+ *
+ * The file is decoded in chunks from a buffered channel. Everything before the start tag
+ * of the element is discarded as soon as it is scanned, and reading stops once the
+ * matching end tag is found. The nesting is tracked by counting the start and end tags
+ * with the same name, so the extraction is meant for generated HTML where the tag does not
+ * occur in comments or scripts inside the element. Callers fall back to a full parse if
+ * the element is not found.
+ *
+ * @author Andreas Huber
+ */
+final class ElementExtractor {
+
+	/** Number of characters decoded at once. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private ElementExtractor() {
+	}
+
+	/**
+	 * Extracts the first element whose start tag contains the given attribute markup.
+	 *
+	 * Invalid UTF-8 is replaced rather than rejected, as the full Jsoup parse does.
+	 *
+	 * @param file the HTML file
+	 * @param tag the tag name of the element, or null for any tag
+	 * @param attribute the attribute markup within the start tag, e.g. {@code data-panel="menu"}
+	 * @return the markup of the element, or null if no complete element was found
+	 * @throws IOException if the file could not be read
+	 */
+	static String extract(final Path file, final String tag, final String attribute) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ);
+				var reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE), -1)) {
+			return extract(reader, tag, attribute);
+		}
+	}
+
+	private static String extract(final Reader reader, final String tag, final String attribute)
+			throws IOException {
+		final var chunk = new char[CHUNK_SIZE];
+		final var buffer = new StringBuilder(CHUNK_SIZE);
+		String name = null;
+		var position = 0;
+		var depth = 0;
+		int read;
+		while ((read = reader.read(chunk)) != -1) {
+			buffer.append(chunk, 0, read);
+			if (name == null) {
+				final var open = findStartTag(buffer, tag, attribute);
+				if (open < 0) {
+					continue;
+				}
+				buffer.delete(0, open);
+				name = tagName(buffer, 1);
+			}
+			// track the nesting of the element until its end tag
+			while (true) {
+				final var next = buffer.indexOf("<", position);
+				if (next < 0 || next + name.length() + 2 >= buffer.length()) {
+					position = next < 0 ? buffer.length() : next;
+					break;
+				}
+				final var closing = buffer.charAt(next + 1) == '/';
+				final var start = closing ? next + 2 : next + 1;
+				if (name.equalsIgnoreCase(tagName(buffer, start))) {
+					final var end = buffer.indexOf(">", start);
+					if (end < 0) {
+						position = next;
+						break;
+					}
+					if (closing) {
+						depth--;
+					} else if (buffer.charAt(end - 1) != '/') {
+						depth++;
+					}
+					if (depth == 0) {
+						return buffer.substring(0, end + 1);
+					}
+					position = end + 1;
+				} else {
+					position = next + 1;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the start tag containing the attribute markup. If it is not found, everything
+	 * before the last tag, which may still be incomplete, is discarded.
+	 *
+	 * @param buffer the markup read so far
+	 * @param tag the tag name of the element, or null for any tag
+	 * @param attribute the attribute markup within the start tag
+	 * @return the index of the start tag, or -1 if it was not found yet
+	 */
+	private static int findStartTag(final StringBuilder buffer, final String tag, final String attribute) {
+		var from = 0;
+		while (true) {
+			final var marker = buffer.indexOf(attribute, from);
+			if (marker < 0) {
+				final var last = buffer.lastIndexOf("<");
+				buffer.delete(0, last < 0 ? buffer.length() : last);
+				return -1;
+			}
+			final var open = buffer.lastIndexOf("<", marker);
+			if (open >= 0) {
+				final var close = buffer.indexOf(">", open);
+				final var name = tagName(buffer, open + 1);
+				if (name != null && (close < 0 || close > marker) && (tag == null || tag.equalsIgnoreCase(name))) {
+					return open;
+				}
+			}
+			from = marker + attribute.length();
+		}
+	}
+
+	/**
+	 * Reads the tag name starting at the given index.
+	 *
+	 * @param buffer the markup
+	 * @param start the index of the first character of the name
+	 * @return the tag name, or null if there is no name
+	 */
+	private static String tagName(final CharSequence buffer, final int start) {
+		var end = start;
+		while (end < buffer.length()) {
+			final var c = buffer.charAt(end);
+			if (Character.isWhitespace(c) || c == '>' || c == '/') {
+				break;
+			}
+			end++;
+		}
+		return end > start ? buffer.subSequence(start, end).toString() : null;
+	}
+}
@@ -17,11 +17,11 @@ package io.github.huber_and.atlassian.wiki.parser;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.List;
 
 import org.jsoup.nodes.Element;
 
 import io.github.huber_and.atlassian.wiki.Page;
+import io.github.huber_and.atlassian.wiki.PageTree;
 
 /**
  * Interface for parsing pages from various sources.
@@ -40,10 +40,10 @@ public interface Parser {
 	 * Page objects representing the page hierarchy.
 	 *
 	 * @param root the root path containing the source files
-	 * @return a list of root-level pages parsed from the source
+	 * @return the tree of pages parsed from the source
 	 * @throws IOException if an error occurs while reading source files
 	 */
-	List<Page> resolvePages(Path root) throws IOException;
+	PageTree resolvePages(Path root) throws IOException;
 
 	/**
 	 * Loads the content of the given page from its source file.
@@ -18,6 +18,7 @@ package io.github.huber_and.atlassian.wiki.transformer;
 import java.nio.file.Files;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jsoup.nodes.CDataNode;
 import org.jsoup.nodes.Element;
 
 import io.github.huber_and.atlassian.wiki.Attachment;
@@ -42,12 +43,6 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ConfluenceTransformer implements Transformer {
 
-	/** Placeholder for CDATA section start. */
-	private static final String CDATA_PLACEHOLDER_START = "<cdata-placeholder>";
-
-	/** Placeholder for CDATA section end. */
-	private static final String CDATA_PLACEHOLDER_END = "</cdata-placeholder>";
-
 	/**
 	 * Transforms page content to Confluence storage format.
 	 *
@@ -67,7 +62,7 @@ public class ConfluenceTransformer implements Transformer {
 		}
 		transformImages(page, content, result);
 		transformCodeBlocks(content);
-		result.setContent(sanitizeBody(content));
+		result.setContent(StorageFormatWriter.write(content));
 		return result;
 	}
 
@@ -122,7 +117,7 @@ public class ConfluenceTransformer implements Transformer {
 	 * Transforms all code block elements to Confluence code macros.
 	 *
 	 * Extracts the programming language from data attributes and wraps
-	 * the code content in a Confluence structured code macro.
+	 * the raw code text as CDATA section in a Confluence structured code macro.
 	 *
 	 * @param content the HTML content containing code blocks
 	 */
@@ -133,38 +128,8 @@ public class ConfluenceTransformer implements Transformer {
 			final var codeMacro = new Element("ac:structured-macro", "ac");
 			codeMacro.attr("ac:name", "code");
 			codeMacro.appendElement("ac:parameter", "ac").attr("ac:name", "language").appendText(language);
-			codeMacro.appendElement("ac:plain-text-body", "ac").appendElement("cdata-placeholder")
-					.appendText(code.html());
+			codeMacro.appendElement("ac:plain-text-body", "ac").appendChild(new CDataNode(code.wholeText()));
 			parent.replaceWith(codeMacro);
 		});
 	}
-
-	/**
-	 * Sanitizes the HTML body by removing unnecessary attributes and handling CDATA sections.
-	 *
-	 * Removes all class attributes and wraps CDATA content with proper markers.
-	 *
-	 * @param body the HTML body element to sanitize
-	 * @return the sanitized HTML as a string
-	 */
-	private String sanitizeBody(final Element body) {
-		body.forEach(e -> e.removeAttr("class"));
-		var html = body.html().trim();
-		var start = html.indexOf(CDATA_PLACEHOLDER_START);
-		while (start > -1) {
-			final var end = html.indexOf(CDATA_PLACEHOLDER_END, start);
-			if (end > -1) {
-				final var prefix = html.substring(0, start) + CDATA_PLACEHOLDER_START;
-				final var suffix = html.substring(end);
-				final var unescaped = html.substring(start + CDATA_PLACEHOLDER_START.length(), end).replace("&lt;", "<")
-						.replace("&gt;", ">").replace("&amp;", "&");
-				html = prefix + unescaped + suffix;
-			}
-			start = html.indexOf(CDATA_PLACEHOLDER_START, start + 1);
-		}
-		return html.replace("<br>", "<br />").replace("</br>", "<br />").replaceAll("<a([^>]*)></a>", "")
-				.replace(CDATA_PLACEHOLDER_START, "<![CDATA[").replace(CDATA_PLACEHOLDER_END, "]]>")
-				// workaround for #402
-				.replaceAll("(?m)(ac:name=\"language\">)([\n\r\t ]*)([a-z]+)([\n\r\t ]*)(</ac)", "$1$3$5");
-	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.transformer;
+
+import java.util.Set;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Serializes a Jsoup tree to Confluence storage format in a single pass.
+ *
+ * The writer walks the tree once and appends to a builder reused by the calling thread.
+ * Compared to the HTML serializer of Jsoup it
+ * <ul>
+ *   <li>writes {@link CDataNode}s as CDATA sections with their raw text</li>
+ *   <li>closes void elements like {@code <br />} as required by XHTML, also if the XML
+ *   parser nested the following content into an unclosed {@code <br>}</li>
+ *   <li>drops all class attributes and empty anchors</li>
+ *   <li>keeps the whitespace of the source instead of pretty printing</li>
+ * </ul>
+ *
+ * @author Andreas Huber
+ */
+final class StorageFormatWriter implements NodeVisitor {
+
+	/** HTML elements which never have content. */
+	private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+			"input", "link", "meta", "source", "track", "wbr");
+
+	/** Builders larger than this are not kept for reuse. */
+	private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+	/** The builder reused by each thread. */
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+	/** The builder to append to. */
+	private final StringBuilder out;
+
+	private StorageFormatWriter(final StringBuilder out) {
+		this.out = out;
+	}
+
+	/**
+	 * Serializes the children of the given element.
+	 *
+	 * @param body the element whose content is written
+	 * @return the content in storage format without leading and trailing whitespace
+	 */
+	static String write(final Element body) {
+		final var out = BUILDER.get();
+		out.setLength(0);
+		try {
+			final var writer = new StorageFormatWriter(out);
+			for (final Node child : body.childNodes()) {
+				NodeTraversor.traverse(writer, child);
+			}
+			var start = 0;
+			var end = out.length();
+			while (start < end && Character.isWhitespace(out.charAt(start))) {
+				start++;
+			}
+			while (end > start && Character.isWhitespace(out.charAt(end - 1))) {
+				end--;
+			}
+			return out.substring(start, end);
+		} finally {
+			if (out.capacity() > MAX_RETAINED_CAPACITY) {
+				BUILDER.remove();
+			}
+		}
+	}
+
+	@Override
+	public void head(final Node node, final int depth) {
+		if (node instanceof final CDataNode cdata) {
+			out.append("<![CDATA[").append(cdata.text().replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+		} else if (node instanceof final TextNode text) {
+			escape(text.getWholeText(), false);
+		} else if (node instanceof final DataNode data) {
+			out.append(data.getWholeData());
+		} else if (node instanceof final Element element && !isEmptyAnchor(element)) {
+			out.append('<').append(element.tagName());
+			element.attributes().forEach(attribute -> {
+				if (!"class".equals(attribute.getKey())) {
+					out.append(' ').append(attribute.getKey()).append("=\"");
+					escape(attribute.getValue(), true);
+					out.append('"');
+				}
+			});
+			out.append(isVoid(element) ? " />" : ">");
+		}
+	}
+
+	@Override
+	public void tail(final Node node, final int depth) {
+		if (node instanceof final Element element && !isEmptyAnchor(element) && !isVoid(element)) {
+			out.append("</").append(element.tagName()).append('>');
+		}
+	}
+
+	private static boolean isEmptyAnchor(final Element element) {
+		return "a".equals(element.normalName()) && element.childNodeSize() == 0;
+	}
+
+	private static boolean isVoid(final Element element) {
+		return VOID_ELEMENTS.contains(element.normalName())
+				|| element.childNodeSize() == 0 && (element.tag().isEmpty() || element.tag().isSelfClosing());
+	}
+
+	/**
+	 * Appends the text with the characters escaped which are not allowed in storage format.
+	 *
+	 * @param text the text to append
+	 * @param attribute true if the text is an attribute value
+	 */
+	private void escape(final String text, final boolean attribute) {
+		final var length = text.length();
+		for (var i = 0; i < length; i++) {
+			final var c = text.charAt(i);
+			switch (c) {
+			case '&' -> out.append("&amp;");
+			case '<' -> out.append("&lt;");
+			case '>' -> out.append("&gt;");
+			case '\u00a0' -> out.append("&#xa0;");
+			case '"' -> out.append(attribute ? "&quot;" : "\"");
+			default -> out.append(c);
+			}
+		}
+	}
+}
@@ -15,12 +15,13 @@
  */
 package io.github.huber_and.atlassian.wiki.transformer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.jsoup.nodes.Element;
 
 import io.github.huber_and.atlassian.wiki.Attachment;
+import io.github.huber_and.atlassian.wiki.Digests;
 import io.github.huber_and.atlassian.wiki.Page;
 
 import lombok.Data;
@@ -56,8 +57,8 @@ public interface Transformer {
 		/** The transformed content in Confluence storage format. */
 		private String content;
 
-		/** The list of attachments discovered in the content. */
-		private List<Attachment> attachments = new ArrayList<>();
+		/** The attachments discovered in the content, in the order of their first reference. */
+		private Set<Attachment> attachments = new LinkedHashSet<>();
 
 		/**
 		 * Adds an attachment to the result if it's not already present.
@@ -65,9 +66,18 @@ public interface Transformer {
 		 * @param attachment the attachment to add
 		 */
 		public void add(final Attachment attachment) {
-			if (!attachments.contains(attachment)) {
-				attachments.add(attachment);
-			}
+			attachments.add(attachment);
+		}
+
+		/**
+		 * Computes the SHA-256 digest of the transformed content.
+		 *
+		 * The digest is used to detect unchanged pages without comparing the whole body.
+		 *
+		 * @return the hex encoded digest, or null if no content is set
+		 */
+		public String digest() {
+			return content != null ? Digests.sha256(content) : null;
 		}
 	}
 
@@ -0,0 +1,716 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.huber_and.atlassian.wiki.stub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embeddable in-memory stub of the Confluence REST endpoints used by the publisher.
+ *
+ * Keeps spaces, pages, content properties and attachments in memory and serves the v2
+ * endpoints for them together with the v1 attachment upload. Listings are paginated with
+ * cursors like Confluence does. The stub listens on a local port, the base URL to configure
+ * is returned by {@link #getUrl()}.
+ *
+ * To load test a client, every response can be delayed by a latency and a share of the
+ * requests can be rejected with {@code 429 Too Many Requests} and a {@code Retry-After}
+ * header. The stub counts all requests and the rejected ones.
+ *
+ * The stub can also be run standalone, see {@link #main(String[])}.
+ *
+ * @author Andreas Huber
+ */
+public class ConfluenceStub implements AutoCloseable {
+
+	/** The context path of the stub, like the one of Confluence Cloud. */
+	private static final String CONTEXT = "/wiki";
+
+	/** The default number of results of a listing. */
+	private static final int DEFAULT_LIMIT = 25;
+
+
+	static {
+		// avoid delayed ACKs between the headers and the body of a response
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	/** JSON mapper for requests and responses. */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/** The HTTP server. */
+	private final HttpServer server;
+
+	/** The executor handling the requests. */
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/** Source of all IDs. */
+	private final AtomicLong ids = new AtomicLong(1000);
+
+	/** The spaces by key. */
+	private final Map<String, Space> spaces = new ConcurrentHashMap<>();
+
+	/** The pages by ID. */
+	private final Map<String, StubPage> pages = new ConcurrentHashMap<>();
+
+	/** The page IDs by space ID and title. */
+	private final Map<String, String> titles = new ConcurrentHashMap<>();
+
+	/** The number of requests received. */
+	private final AtomicLong requests = new AtomicLong();
+
+	/** The number of requests rejected with 429. */
+	private final AtomicLong throttled = new AtomicLong();
+
+	/** The delay of every response. */
+	private volatile Duration latency = Duration.ZERO;
+
+	/** The maximum random delay added to the latency. */
+	private volatile Duration jitter = Duration.ZERO;
+
+	/** The share of requests rejected with 429, between 0 and 1. */
+	private volatile double throttleRate;
+
+	/** The delay the client is asked to wait after a 429. */
+	private volatile Duration retryAfter = Duration.ofSeconds(1);
+
+	/** The maximum number of results of a listing. */
+	private volatile int maxLimit = 250;
+
+	/**
+	 * Starts a stub on a random local port.
+	 *
+	 * @throws IOException if the server could not be started
+	 */
+	public ConfluenceStub() throws IOException {
+		this(0);
+	}
+
+	/**
+	 * Starts a stub on the given local port.
+	 *
+	 * @param port the port, or 0 for a random port
+	 * @throws IOException if the server could not be started
+	 */
+	public ConfluenceStub(final int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext(CONTEXT, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Returns the base URL to configure for the publisher.
+	 *
+	 * @return the base URL
+	 */
+	public String getUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + CONTEXT;
+	}
+
+	/**
+	 * Creates a space.
+	 *
+	 * @param key the space key
+	 * @return the ID of the space
+	 */
+	public String addSpace(final String key) {
+		return spaces.computeIfAbsent(key, k -> new Space(String.valueOf(ids.incrementAndGet()), k)).id();
+	}
+
+	/**
+	 * Sets the delay of every response.
+	 *
+	 * @param latency the fixed delay
+	 * @param jitter the maximum random delay added to the fixed one
+	 */
+	public void setLatency(final Duration latency, final Duration jitter) {
+		this.latency = latency;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Sets the share of requests rejected with {@code 429 Too Many Requests}.
+	 *
+	 * @param throttleRate the share between 0 for none and 1 for all requests
+	 * @param retryAfter the delay returned in the {@code Retry-After} header, in whole seconds
+	 */
+	public void setThrottling(final double throttleRate, final Duration retryAfter) {
+		this.throttleRate = throttleRate;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Sets the maximum number of results of a listing. Lower values make clients follow more
+	 * pagination cursors.
+	 *
+	 * @param maxLimit the maximum number of results, 250 like Confluence by default
+	 */
+	public void setMaxLimit(final int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * Returns the number of requests received, including the rejected ones.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Returns the number of requests rejected with {@code 429 Too Many Requests}.
+	 *
+	 * @return the number of rejected requests
+	 */
+	public long getThrottledCount() {
+		return throttled.get();
+	}
+
+	/**
+	 * Returns the number of pages in all spaces.
+	 *
+	 * @return the number of pages
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Removes all pages and resets the counters. The spaces are kept.
+	 */
+	public void reset() {
+		pages.clear();
+		titles.clear();
+		requests.set(0);
+		throttled.set(0);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.close();
+	}
+
+	/**
+	 * Runs the stub standalone until the process is stopped.
+	 *
+	 * The base URL is printed to standard output. The stub has no logging dependency so it can
+	 * be embedded anywhere, so the URL is shown without any logging setup.
+	 *
+	 * @param args the port, followed by the keys of the spaces to create
+	 * @throws Exception if the stub could not be started
+	 */
+	public static void main(final String[] args) throws Exception {
+		final var stub = new ConfluenceStub(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+		for (var i = 1; i < args.length; i++) {
+			stub.addSpace(args[i]);
+		}
+		// deliberately stdout, there is no logger on the class path of the standalone stub
+		System.out.println("Confluence stub listening on " + stub.getUrl());
+		Thread.currentThread().join();
+	}
+
+	private void handle(final HttpExchange exchange) throws IOException {
+		try (exchange) {
+			requests.incrementAndGet();
+			delay();
+			if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+				throttled.incrementAndGet();
+				exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+				exchange.getResponseHeaders().add("Retry-After",
+						String.valueOf((retryAfter.toMillis() + 999) / 1000));
+				exchange.sendResponseHeaders(429, -1);
+				return;
+			}
+			final var path = exchange.getRequestURI().getRawPath().substring(CONTEXT.length());
+			final var query = query(exchange.getRequestURI().getRawQuery());
+			final var method = exchange.getRequestMethod();
+			final var segments = path.split("/");
+			final Response response;
+			if (path.startsWith("/rest/api/content/") && path.endsWith("/child/attachment")) {
+				response = uploadAttachments(segments[4], exchange);
+			} else if ("POST".equals(method) && "/rest/api/content/archive".equals(path)) {
+				response = archivePages(read(exchange));
+			} else if ("PUT".equals(method) && path.matches("/rest/api/content/\\d+/move/append/\\d+")) {
+				response = movePage(segments[4], segments[7]);
+			} else if (path.startsWith("/api/v2/")) {
+				response = route(method, List.of(segments).subList(3, segments.length), query, exchange);
+			} else {
+				response = Response.NOT_FOUND;
+			}
+			final var body = response.body() == null ? new byte[0] : mapper.writeValueAsBytes(response.body());
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+			if (body.length > 0) {
+				exchange.getResponseBody().write(body);
+			}
+		}
+	}
+
+	private void delay() {
+		final var millis = latency.toMillis()
+				+ (jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1));
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private Response route(final String method, final List<String> path, final Map<String, String> query,
+			final HttpExchange exchange) throws IOException {
+		final var resource = String.join("/", path.stream().map(s -> s.matches("\\d+") ? "{id}" : s).toList());
+		return switch (method + " " + resource) {
+		case "GET spaces" -> list(spaces.values().stream()
+				.filter(s -> query.get("keys") == null || List.of(query.get("keys").split(",")).contains(s.key()))
+				.map(s -> (Object) Map.of("id", s.id(), "key", s.key(), "name", s.key())).toList(), query,
+				"/api/v2/spaces");
+		case "GET spaces/{id}/pages" -> list(pages.values().stream()
+				.filter(p -> p.spaceId.equals(path.get(1)) && !p.archived)
+				.sorted((a, b) -> Long.compare(Long.parseLong(a.id), Long.parseLong(b.id))).map(StubPage::json)
+				.toList(), query, "/api/v2/spaces/" + path.get(1) + "/pages");
+		case "GET pages" -> list(pages.values().stream().filter(p -> matches(p, query))
+				.sorted((a, b) -> Long.compare(Long.parseLong(a.id), Long.parseLong(b.id))).map(StubPage::json)
+				.toList(), query, "/api/v2/pages");
+		case "POST pages" -> createPage(read(exchange));
+		case "GET pages/{id}" -> withPage(path.get(1), p -> new Response(200, p.json()));
+		case "PUT pages/{id}" -> {
+			final var request = read(exchange);
+			yield withPage(path.get(1), p -> p.update(request));
+		}
+		case "DELETE pages/{id}" -> deletePage(path.get(1));
+		case "GET pages/{id}/direct-children" -> withPage(path.get(1), p -> list(pages.values().stream()
+				.filter(c -> p.id.equals(c.parentId) && !c.archived)
+				.sorted((a, b) -> Long.compare(Long.parseLong(a.id), Long.parseLong(b.id)))
+				.map(c -> (Object) Map.of("id", c.id, "status", "current", "title", c.title, "type", "page",
+						"spaceId", c.spaceId))
+				.toList(), query, "/api/v2/pages/" + p.id + "/direct-children"));
+		case "GET pages/{id}/descendants" -> withPage(path.get(1), p -> list(descendants(p,
+				Integer.parseInt(query.getOrDefault("depth", "5"))), query, "/api/v2/pages/" + p.id + "/descendants"));
+		case "GET pages/{id}/properties" -> withPage(path.get(1), p -> list(
+				p.properties.values().stream().map(Property::json).toList(), query,
+				"/api/v2/pages/" + p.id + "/properties"));
+		case "POST pages/{id}/properties" -> {
+			final var request = read(exchange);
+			yield withPage(path.get(1), p -> p.createProperty(request));
+		}
+		case "PUT pages/{id}/properties/{id}" -> {
+			final var request = read(exchange);
+			yield withPage(path.get(1), p -> p.updateProperty(path.get(3), request));
+		}
+		case "GET pages/{id}/attachments" -> withPage(path.get(1), p -> list(
+				p.attachments.values().stream().map(Attachment::json).toList(), query,
+				"/api/v2/pages/" + p.id + "/attachments"));
+		default -> Response.NOT_FOUND;
+		};
+	}
+
+	private Response createPage(final JsonNode request) {
+		final var spaceId = request.path("spaceId").asText();
+		final var title = request.path("title").asText();
+		final var id = String.valueOf(ids.incrementAndGet());
+		if (titles.putIfAbsent(spaceId + "/" + title, id) != null) {
+			return error(400, "A page with this title already exists");
+		}
+		final var parentId = request.path("parentId").isTextual() ? request.path("parentId").asText() : null;
+		final var page = new StubPage(id, spaceId, parentId, title, request.path("body").path("value").asText());
+		pages.put(id, page);
+		return new Response(200, page.json());
+	}
+
+	/**
+	 * Checks a page against the {@code id}, {@code space-id}, {@code title} and {@code status}
+	 * filters of a page listing. Without a status filter only current pages match.
+	 */
+	private static boolean matches(final StubPage page, final Map<String, String> query) {
+		final var status = List.of(query.getOrDefault("status", "current").split(","));
+		return (query.get("id") == null || List.of(query.get("id").split(",")).contains(page.id))
+				&& (query.get("space-id") == null || List.of(query.get("space-id").split(",")).contains(page.spaceId))
+				&& (query.get("title") == null || query.get("title").equals(page.title))
+				&& status.contains(page.archived ? "archived" : "current");
+	}
+
+	/**
+	 * Deletes a page. Its children move up to its parent like in Confluence.
+	 */
+	private Response deletePage(final String id) {
+		final var page = pages.remove(id);
+		if (page == null) {
+			return Response.NOT_FOUND;
+		}
+		titles.remove(page.spaceId + "/" + page.title, id);
+		pages.values().stream().filter(p -> id.equals(p.parentId)).forEach(p -> p.parentId = page.parentId);
+		return new Response(204, null);
+	}
+
+	/**
+	 * Lists the descendants of a page breadth first, down to the given depth.
+	 */
+	private List<Object> descendants(final StubPage root, final int depth) {
+		final Map<String, List<StubPage>> children = new HashMap<>();
+		pages.values().stream().filter(p -> p.parentId != null)
+				.sorted((a, b) -> Long.compare(Long.parseLong(a.id), Long.parseLong(b.id)))
+				.forEach(p -> children.computeIfAbsent(p.parentId, k -> new ArrayList<>()).add(p));
+		final List<Object> results = new ArrayList<>();
+		List<StubPage> level = List.of(root);
+		for (var current = 1; current <= depth && !level.isEmpty(); current++) {
+			final List<StubPage> next = new ArrayList<>();
+			for (final StubPage parent : level) {
+				for (final StubPage child : children.getOrDefault(parent.id, List.of())) {
+					final ObjectNode json = mapper.createObjectNode();
+					json.put("id", child.id).put("status", child.archived ? "archived" : "current")
+							.put("title", child.title).put("type", "page").put("parentId", parent.id)
+							.put("depth", current);
+					results.add(json);
+					next.add(child);
+				}
+			}
+			level = next;
+		}
+		return results;
+	}
+
+	/**
+	 * Archives the pages of a v1 archive request. Unlike Confluence the pages are archived
+	 * before the response.
+	 */
+	private Response archivePages(final JsonNode request) {
+		for (final JsonNode page : request.path("pages")) {
+			final var stubPage = pages.get(page.path("id").asText());
+			if (stubPage == null) {
+				return error(400, "Page " + page.path("id").asText() + " not found");
+			}
+			stubPage.archived = true;
+		}
+		return new Response(202, Map.of("id", String.valueOf(ids.incrementAndGet())));
+	}
+
+	/**
+	 * Moves a page to the end of the children of the target page.
+	 */
+	private Response movePage(final String id, final String targetId) {
+		if (!pages.containsKey(targetId)) {
+			return Response.NOT_FOUND;
+		}
+		return withPage(id, p -> {
+			p.parentId = targetId;
+			return new Response(200, Map.of("pageId", p.id));
+		});
+	}
+
+	private Response withPage(final String id, final Function<StubPage, Response> action) {
+		final var page = pages.get(id);
+		if (page == null) {
+			return Response.NOT_FOUND;
+		}
+		synchronized (page) {
+			return action.apply(page);
+		}
+	}
+
+	/**
+	 * Returns one set of results starting at the cursor, with a link to the next set if there
+	 * are more results.
+	 */
+	private Response list(final List<Object> results, final Map<String, String> query, final String path) {
+		final var limit = Math.min(maxLimit, Integer.parseInt(query.getOrDefault("limit", "" + DEFAULT_LIMIT)));
+		final var cursor = query.get("cursor");
+		final var start = cursor == null ? 0
+				: Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+		final var end = Math.min(results.size(), start + limit);
+		final var body = mapper.createObjectNode();
+		body.set("results", mapper.valueToTree(results.subList(Math.min(start, end), end)));
+		final var links = body.putObject("_links");
+		if (end < results.size()) {
+			final var next = Base64.getUrlEncoder().encodeToString(String.valueOf(end).getBytes(StandardCharsets.UTF_8));
+			links.put("next", CONTEXT + path + "?limit=" + limit + "&cursor=" + next);
+		}
+		return new Response(200, body);
+	}
+
+	/**
+	 * Stores the files of a multipart upload as attachments. A comment part belongs to the
+	 * file before it.
+	 */
+	private Response uploadAttachments(final String pageId, final HttpExchange exchange) throws IOException {
+		final var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		final var boundary = contentType == null ? null
+				: contentType.replaceAll(".*boundary=\"?([^\";]+)\"?.*", "$1");
+		final var body = exchange.getRequestBody().readAllBytes();
+		return withPage(pageId, page -> {
+			final List<Object> results = new ArrayList<>();
+			Attachment last = null;
+			for (final Part part : Part.parse(body, boundary)) {
+				if (part.filename() != null) {
+					last = page.attachments.computeIfAbsent(part.filename(),
+							f -> new Attachment(String.valueOf(ids.incrementAndGet()), f));
+					last.fileSize = part.length();
+					last.comment = null;
+					last.version++;
+					results.add(last.json());
+				} else if ("comment".equals(part.name()) && last != null) {
+					last.comment = new String(body, part.offset(), part.length(), StandardCharsets.UTF_8);
+				}
+			}
+			return new Response(200, Map.of("results", results));
+		});
+	}
+
+	private JsonNode read(final HttpExchange exchange) throws IOException {
+		return mapper.readTree(exchange.getRequestBody());
+	}
+
+	private static Map<String, String> query(final String raw) {
+		final Map<String, String> query = new HashMap<>();
+		if (raw != null) {
+			for (final String parameter : raw.split("&")) {
+				final var index = parameter.indexOf('=');
+				if (index > 0) {
+					query.merge(URLDecoder.decode(parameter.substring(0, index), StandardCharsets.UTF_8),
+							URLDecoder.decode(parameter.substring(index + 1), StandardCharsets.UTF_8),
+							(a, b) -> a + "," + b);
+				}
+			}
+		}
+		return query;
+	}
+
+	private Response error(final int status, final String message) {
+		return new Response(status, Map.of("errors", List.of(Map.of("status", status, "title", message))));
+	}
+
+	/**
+	 * A response of the stub.
+	 *
+	 * @param status the HTTP status
+	 * @param body the JSON body, or null
+	 */
+	private record Response(int status, Object body) {
+
+		static final Response NOT_FOUND = new Response(404, null);
+	}
+
+	/**
+	 * A space.
+	 *
+	 * @param id the space ID
+	 * @param key the space key
+	 */
+	private record Space(String id, String key) {
+	}
+
+	/**
+	 * A page with its properties and attachments.
+	 */
+	private final class StubPage {
+
+		private final String id;
+		private final String spaceId;
+		private volatile String parentId;
+		private final String title;
+		private volatile boolean archived;
+		private String body;
+		private int version = 1;
+		private final Map<String, Property> properties = new HashMap<>();
+		private final Map<String, Attachment> attachments = new HashMap<>();
+
+		StubPage(final String id, final String spaceId, final String parentId, final String title,
+				final String body) {
+			this.id = id;
+			this.spaceId = spaceId;
+			this.parentId = parentId;
+			this.title = title;
+			this.body = body;
+		}
+
+		Response update(final JsonNode request) {
+			final var number = request.path("version").path("number").asInt();
+			if (number != version + 1) {
+				return error(409, "Version must be incremented on update. Current version is: " + version);
+			}
+			version = number;
+			body = request.path("body").path("value").asText();
+			return new Response(200, json());
+		}
+
+		Response createProperty(final JsonNode request) {
+			final var key = request.path("key").asText();
+			if (properties.containsKey(key)) {
+				return error(400, "A property with this key already exists");
+			}
+			final var property = new Property(String.valueOf(ids.incrementAndGet()), key);
+			property.value = request.get("value");
+			properties.put(key, property);
+			return new Response(200, property.json());
+		}
+
+		Response updateProperty(final String propertyId, final JsonNode request) {
+			final var property = properties.values().stream().filter(p -> p.id.equals(propertyId)).findFirst();
+			if (property.isEmpty()) {
+				return Response.NOT_FOUND;
+			}
+			final var number = request.path("version").path("number").asInt();
+			if (number != property.get().version + 1) {
+				return error(409, "Version must be incremented on update");
+			}
+			property.get().version = number;
+			property.get().value = request.get("value");
+			return new Response(200, property.get().json());
+		}
+
+		Object json() {
+			final ObjectNode json = mapper.createObjectNode();
+			json.put("id", id).put("status", archived ? "archived" : "current").put("title", title)
+					.put("spaceId", spaceId);
+			if (parentId != null) {
+				json.put("parentId", parentId);
+			}
+			json.putObject("version").put("number", version);
+			return json;
+		}
+	}
+
+	/**
+	 * A content property.
+	 */
+	private final class Property {
+
+		private final String id;
+		private final String key;
+		private JsonNode value;
+		private int version = 1;
+
+		Property(final String id, final String key) {
+			this.id = id;
+			this.key = key;
+		}
+
+		Object json() {
+			final ObjectNode json = mapper.createObjectNode();
+			json.put("id", id).put("key", key).set("value", value);
+			json.putObject("version").put("number", version);
+			return json;
+		}
+	}
+
+	/**
+	 * An attachment.
+	 */
+	private final class Attachment {
+
+		private final String id;
+		private final String title;
+		private long fileSize;
+		private String comment;
+		private int version;
+
+		Attachment(final String id, final String title) {
+			this.id = id;
+			this.title = title;
+		}
+
+		Object json() {
+			final ObjectNode json = mapper.createObjectNode();
+			json.put("id", "att" + id).put("status", "current").put("title", title).put("fileSize", fileSize);
+			if (comment != null) {
+				json.put("comment", comment);
+			}
+			json.putObject("version").put("number", version);
+			return json;
+		}
+	}
+
+	/**
+	 * A part of a multipart body.
+	 *
+	 * @param name the name of the form field
+	 * @param filename the file name, or null for a text field
+	 * @param offset the offset of the content in the body
+	 * @param length the length of the content
+	 */
+	private record Part(String name, String filename, int offset, int length) {
+
+		static List<Part> parse(final byte[] body, final String boundary) {
+			final List<Part> parts = new ArrayList<>();
+			if (boundary == null) {
+				return parts;
+			}
+			final var delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+			var start = indexOf(body, delimiter, 0);
+			while (start >= 0) {
+				final var headersStart = start + delimiter.length + 2;
+				final var next = indexOf(body, delimiter, headersStart);
+				if (next < 0) {
+					break;
+				}
+				final var headersEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), headersStart);
+				if (headersEnd > 0 && headersEnd < next) {
+					final var headers = new String(body, headersStart, headersEnd - headersStart,
+							StandardCharsets.UTF_8);
+					final var offset = headersEnd + 4;
+					parts.add(new Part(attribute(headers, "name"), attribute(headers, "filename"), offset,
+							next - 2 - offset));
+				}
+				start = next;
+			}
+			return parts;
+		}
+
+		private static String attribute(final String headers, final String name) {
+			final var matcher = Pattern.compile("[; ]" + name + "=\"([^\"]*)\"").matcher(headers);
+			return matcher.find() ? matcher.group(1) : null;
+		}
+
+		private static int indexOf(final byte[] data, final byte[] pattern, final int from) {
+			outer: for (var i = from; i <= data.length - pattern.length; i++) {
+				for (var j = 0; j < pattern.length; j++) {
+					if (data[i + j] != pattern[j]) {
+						continue outer;
+					}
+				}
+				return i;
+			}
+			return -1;
+		}
+	}
+}